@@ -0,0 +1,20 @@
+-- Unique key of printed_label_counts, needed by the barcode portlet to count printed labels with
+-- one atomic upsert (INSERT ... ON DUPLICATE KEY UPDATE).
+--
+-- Existing duplicate rows have to be merged before the key can be added, e.g. with the statements
+-- below. Run them while the portlet is not printing.
+
+CREATE TEMPORARY TABLE printed_label_counts_merged AS
+  SELECT printer_id, project_id, user_name, SUM(num_printed) AS num_printed
+  FROM printed_label_counts
+  GROUP BY printer_id, project_id, user_name;
+
+DELETE FROM printed_label_counts;
+
+INSERT INTO printed_label_counts (printer_id, project_id, user_name, num_printed)
+  SELECT printer_id, project_id, user_name, num_printed FROM printed_label_counts_merged;
+
+DROP TEMPORARY TABLE printed_label_counts_merged;
+
+ALTER TABLE printed_label_counts
+  ADD UNIQUE KEY printed_label_counts_key (printer_id, project_id, user_name);
@@ -0,0 +1,35 @@
+package life.qbic.portal.portlet;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import life.qbic.portal.portlet.io.LabelCountBuffer;
+import life.qbic.portal.portlet.io.OpenBisAccess;
+import life.qbic.portal.portlet.io.JmxDBMetrics;
+import life.qbic.portal.portlet.io.PrinterRegistry;
+import life.qbic.portal.portlet.processes.BackgroundExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stops the application-wide services of the portlet when it is undeployed or the portal shuts
+ * down.
+ */
+public class BarcodeDragonContextListener implements ServletContextListener {
+
+  private static final Logger LOG = LogManager.getLogger(BarcodeDragonContextListener.class);
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    // services are started lazily by the first UI
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    LOG.info("Shutting down Barcode Dragon services.");
+    LabelCountBuffer.shutdown();
+    PrinterRegistry.shutdown();
+    JmxDBMetrics.shutdown();
+    OpenBisAccess.shutdown();
+    BackgroundExecutor.shutdown();
+  }
+}
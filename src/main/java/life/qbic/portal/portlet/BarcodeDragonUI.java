@@ -6,11 +6,11 @@ import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.ValoTheme;
 
 import life.qbic.openbis.openbisclient.IOpenBisClient;
-import life.qbic.openbis.openbisclient.OpenBisClient;
 import life.qbic.openbis.openbisclient.OpenBisClientMock;
 import life.qbic.portal.portlet.control.BarcodeController;
 import life.qbic.portal.portlet.control.SampleFilterGenerator;
 import life.qbic.portal.portlet.io.*;
+import life.qbic.portal.portlet.processes.BackgroundExecutor;
 import life.qbic.portal.portlet.view.*;
 import life.qbic.portal.utils.ConfigurationManager;
 import life.qbic.portal.utils.ConfigurationManagerFactory;
@@ -23,8 +23,10 @@ import org.apache.logging.log4j.Logger;
 import com.vaadin.annotations.Theme;
 import com.vaadin.annotations.Widgetset;
 import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinService;
 import com.vaadin.ui.Layout;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -82,9 +84,8 @@ public class BarcodeDragonUI extends QBiCPortletUI {
         if (!testMode) {
             try {//
                 LOG.debug("trying to connect to openbis");
-                this.openbis = new OpenBisClient(config.getDataSourceUser(), config.getDataSourcePassword(),
-                        config.getDataSourceUrl());
-                this.openbis.login();
+                this.openbis = OpenBisAccess.start(config.getDataSourceUser(),
+                        config.getDataSourcePassword(), config.getDataSourceUrl()).getClient();
             } catch (Exception e) {
                 success = false;
                 LOG.error(
@@ -141,7 +142,18 @@ public class BarcodeDragonUI extends QBiCPortletUI {
         } catch (Exception exc){
             LOG.error("Could not acquire user groups from user.", exc);
         }
-        BarcodeController bc = new BarcodeController(openbis, bcConf, dbm, userGroupList, user);
+        LabelCountBuffer labelCounts =
+                LabelCountBuffer.start(dbm, new File(tmpFolder, "printed_label_counts.journal"));
+        PrinterRegistry printers = PrinterRegistry.start(dbm);
+        BackgroundExecutor executor = BackgroundExecutor.start();
+        // the aggregation service summarizing projects has to be deployed to openBIS, see README
+        boolean useSummaryService = Boolean.parseBoolean(VaadinService.getCurrent()
+                .getDeploymentConfiguration()
+                .getApplicationOrSystemProperty("summaryService", "false"));
+        ProjectLoader projectLoader = new ProjectLoader(openbis, VocabularyCache.start(openbis),
+                ProjectSnapshotCache.start(), ExperimentalDesignCache.start(), useSummaryService);
+        BarcodeController bc = new BarcodeController(openbis, projectLoader, bcConf, dbm,
+                labelCounts, printers, executor, userGroupList, user);
         gen.addObserver(bc);
         mainView = new BarcodeView(spaces, isAdmin, gen);
         mainView.setStyleName(ValoTheme.LAYOUT_WELL);
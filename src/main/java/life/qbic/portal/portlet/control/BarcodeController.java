@@ -17,43 +17,40 @@ package life.qbic.portal.portlet.control;
 
 
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
-import javax.xml.bind.JAXBElement;
-import javax.xml.bind.JAXBException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import com.liferay.portal.model.UserGroup;
-import life.qbic.portal.portlet.util.Tuple;
 import life.qbic.portal.Styles;
 import life.qbic.portal.portlet.io.BarcodeConfig;
 import life.qbic.portal.portlet.io.BarcodeCreator;
 import life.qbic.portal.portlet.model.*;
 import life.qbic.portal.portlet.processes.SheetBarcodesReadyRunnable;
 import life.qbic.portal.portlet.processes.TubeBarcodesReadyRunnable;
+import life.qbic.portal.portlet.processes.UIPolling;
+import life.qbic.portal.portlet.util.BarcodeBeanSorter;
+import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator.TranslatedFields;
 import life.qbic.portal.portlet.view.BarcodePreviewComponent;
 import life.qbic.portal.portlet.view.PrintReadyRunnable;
-import life.qbic.xml.manager.StudyXMLParser;
-import life.qbic.xml.properties.Property;
-import life.qbic.xml.study.Qexperiment;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import life.qbic.portal.portlet.io.DBManager;
+import life.qbic.portal.portlet.io.LabelCountBuffer;
+import life.qbic.portal.portlet.io.PrinterRegistry;
+import life.qbic.portal.portlet.io.ProjectLoader;
 import life.qbic.portal.portlet.view.BarcodeView;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Experiment;
 import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Project;
-import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
 import ch.systemsx.cisd.openbis.plugin.query.shared.api.v1.dto.QueryTableModel;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.server.Extension;
@@ -61,13 +58,11 @@ import com.vaadin.ui.Button;
 import com.vaadin.ui.ProgressBar;
 import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.TabSheet.SelectedTabChangeListener;
-import life.qbic.datamodel.identifiers.ExperimentCodeFunctions;
+import com.vaadin.ui.UI;
 import life.qbic.datamodel.identifiers.SampleCodeFunctions;
 import life.qbic.datamodel.printing.IBarcodeBean;
 import life.qbic.datamodel.printing.NewModelBarcodeBean;
 import life.qbic.datamodel.printing.Printer;
-import life.qbic.datamodel.samples.SampleType;
-import life.qbic.datamodel.sorters.*;
 import life.qbic.openbis.openbisclient.IOpenBisClient;
 import life.qbic.openbis.openbisclient.OpenBisClient;
 
@@ -80,37 +75,24 @@ import life.qbic.openbis.openbisclient.OpenBisClient;
 public class BarcodeController implements Observer {
 
   private BarcodeView view;
-  private Map<String, String> taxonomyMap;
+  private ProjectLoader projectLoader;
   private Map<String, String> sampleCodeToSpecies;
   private IOpenBisClient openbis;
   private DBManager dbManager;
+  private LabelCountBuffer labelCounts;
+  private PrinterRegistry printers;
   private BarcodeCreator creator;
   private Map<String, Experiment> experimentsMap;
   private List<UserGroup> liferayUserGroupList;
   private String userID;
+  private Executor executor;
+  // incremented on every project selection, only the latest one is shown
+  private int projectRequest = 0;
 
   List<IBarcodeBean> barcodeBeans;
 
   private static final Logger LOG = LogManager.getLogger(BarcodeController.class);
 
-  private List<SampleType> barcodeSamples =
-      new ArrayList<>(Arrays.asList(SampleType.Q_BIOLOGICAL_ENTITY, SampleType.Q_BIOLOGICAL_SAMPLE,
-          SampleType.Q_TEST_SAMPLE, SampleType.Q_NGS_SINGLE_SAMPLE_RUN,
-          SampleType.Q_MHC_LIGAND_EXTRACT, SampleType.Q_MS_RUN,
-          SampleType.Q_BMI_GENERIC_IMAGING_RUN));
-  // mapping between sample type and interesting property of that sample type has to be added here
-  private Map<SampleType, String> sampleTypeToBioTypeField = new HashMap<SampleType, String>() {
-    {
-      put(SampleType.Q_BIOLOGICAL_ENTITY, "Q_NCBI_ORGANISM");
-      put(SampleType.Q_BIOLOGICAL_SAMPLE, "Q_PRIMARY_TISSUE");
-      put(SampleType.Q_TEST_SAMPLE, "Q_SAMPLE_TYPE");
-      put(SampleType.Q_NGS_SINGLE_SAMPLE_RUN, "");
-      put(SampleType.Q_MHC_LIGAND_EXTRACT, "Q_MHC_CLASS");
-      put(SampleType.Q_MS_RUN, "");
-      put(SampleType.Q_BMI_GENERIC_IMAGING_RUN, "");
-    }
-  };
-
   /**
    * @param bw WizardBarcodeView instance
    * @param openbis OpenBisClient API
@@ -121,17 +103,16 @@ public class BarcodeController implements Observer {
     creator = new BarcodeCreator(bcConf);
   }
 
-  public BarcodeController(IOpenBisClient openbis, BarcodeConfig bcConf, DBManager dbm,
-      List<UserGroup> liferayUserGroupList, String userID) {
+  public BarcodeController(IOpenBisClient openbis, ProjectLoader projectLoader,
+      BarcodeConfig bcConf, DBManager dbm, LabelCountBuffer labelCounts, PrinterRegistry printers,
+      Executor executor, List<UserGroup> liferayUserGroupList, String userID) {
     this.openbis = openbis;
-
-    this.taxonomyMap = new HashMap<>();
-    Map<String, String> ncbiMap = openbis.getVocabCodesAndLabelsForVocab("Q_NCBI_TAXONOMY");
-    for (Map.Entry<String, String> entry : ncbiMap.entrySet()) {
-      taxonomyMap.put(entry.getValue(), entry.getKey());
-    }
+    this.projectLoader = projectLoader;
     this.sampleCodeToSpecies = new HashMap<>();
     this.dbManager = dbm;
+    this.labelCounts = labelCounts;
+    this.printers = printers;
+    this.executor = executor;
     this.liferayUserGroupList = liferayUserGroupList;
     creator = new BarcodeCreator(bcConf);
     this.userID = userID;
@@ -139,23 +120,11 @@ public class BarcodeController implements Observer {
 
   private void sortBeans(List<IBarcodeBean> barcodeBeans) {
     SortBy sorter = view.getSorter();
-    switch (sorter) {
-      case BARCODE_ID:
-        barcodeBeans.sort(SampleCodeComparator.getInstance());
-        break;
-      case EXT_ID:
-        barcodeBeans.sort(SampleExtIDComparator.getInstance());
-        break;
-      case SAMPLE_TYPE:
-        barcodeBeans.sort(SampleTypeComparator.getInstance());
-        break;
-      case SECONDARY_NAME:
-        barcodeBeans.sort(SampleSecondaryNameComparator.getInstance());
-        break;
-      default:
-        LOG.warn("Unknown Barcode Bean sorter or no sorter selected. Barcodes will not be sorted.");
-        break;
+    if (sorter == null) {
+      LOG.warn("Unknown Barcode Bean sorter or no sorter selected. Barcodes will not be sorted.");
+      return;
     }
+    BarcodeBeanSorter.sort(barcodeBeans, sorter);
   }
 
   /**
@@ -216,11 +185,11 @@ public class BarcodeController implements Observer {
             LOG.info("Preparing barcodes (sheet) for project " + project);
             String projectID = "/" + view.getSpaceCode() + "/" + project;
             String name = dbManager.getProjectName(projectID);
+            Map<String, Person> persons =
+                dbManager.getPersonsForProject(projectID, Arrays.asList("PI", "Manager"));
             creator.findOrCreateSheetBarcodesWithProgress(barcodeBeans, bar, view.getProgressInfo(),
-                new SheetBarcodesReadyRunnable(project, name,
-                    dbManager.getPersonForProject(projectID, "PI"),
-                    dbManager.getPersonForProject(projectID, "Manager"), view, creator,
-                    barcodeBeans));
+                new SheetBarcodesReadyRunnable(project, name, persons.get("PI"),
+                    persons.get("Manager"), view, creator, barcodeBeans));
           }
         } else {
           Styles.notification("Can't create Barcodes",
@@ -240,10 +209,16 @@ public class BarcodeController implements Observer {
       view.resetProjects();
       String space = view.getSpaceCode();
       if (space != null) {
-        List<String> projects = new ArrayList<>();
+        List<String> codes = new ArrayList<>();
+        List<String> identifiers = new ArrayList<>();
         for (Project p : openbis.getProjectsOfSpace(space)) {
-          String code = p.getCode();
-          String name = dbManager.getProjectName("/" + space + "/" + code);
+          codes.add(p.getCode());
+          identifiers.add("/" + space + "/" + p.getCode());
+        }
+        Map<String, String> names = dbManager.getProjectNames(identifiers);
+        List<String> projects = new ArrayList<>();
+        for (String code : codes) {
+          String name = names.get("/" + space + "/" + code);
           if (name != null && name.length() > 0) {
             if (name.length() >= 80)
               name = name.substring(0, 80) + "...";
@@ -263,6 +238,8 @@ public class BarcodeController implements Observer {
      */
 
     ValueChangeListener projectSelectListener = (ValueChangeListener) event -> {
+      // results of projects that are still loading are not shown anymore
+      projectRequest++;
       view.resetExperiments();
       String project = view.getProjectCode();
       view.resetPrinters();
@@ -271,6 +248,9 @@ public class BarcodeController implements Observer {
         if (project.contains(" "))
           project = project.split(" ")[0];
         reactToProjectSelection(project);
+      } else {
+        // a superseded load only ends its polling
+        view.setProjectLoading(false);
       }
     };
     ComboBox project = view.getProjectBox();
@@ -287,11 +267,11 @@ public class BarcodeController implements Observer {
       view.resetSamples();
       view.enablePrep(projSelected());// && optionSelected());
       if (expSelected()) {
-        List<Sample> sampleList = new ArrayList<Sample>();
-        Map<Sample, String> types = new HashMap<Sample, String>();
+        List<BarcodeSample> sampleList = new ArrayList<BarcodeSample>();
+        Map<BarcodeSample, String> types = new HashMap<BarcodeSample, String>();
         for (ExperimentBarcodeSummary exp : view.getSelectedExperiments()) {
           String type = exp.getBio_Type();
-          for (Sample s : exp.getSamples()) {
+          for (BarcodeSample s : exp.getSamples()) {
             sampleList.add(s);
             types.put(s, type);
           }
@@ -324,153 +304,54 @@ public class BarcodeController implements Observer {
     view.getTabs().addSelectedTabChangeListener(tabListener);
   }
 
-  // table selection is sorted by sample registration date
+  /**
+   * Loads printers and project data in the background, outside of the session lock, and shows them
+   * once both are available. Until then a loading indicator is shown.
+   */
   private void reactToProjectSelection(String project) {
-    Map<Tuple, ExperimentBarcodeSummary> experiments = new HashMap<>();
-    view.setPrinters(dbManager.getPrintersForProject(project, liferayUserGroupList));
-
-    experimentsMap = new HashMap<>();
-    String space = view.getSpaceCode();
-    String projectID = "/" + space + "/" + project;
-    String infoExpID = ExperimentCodeFunctions.getInfoExperimentID(space, project);
-    for (Experiment e : openbis.getExperimentsForProject(projectID)) {
-      experimentsMap.put(e.getIdentifier(), e);
-      if (e.getIdentifier().equals(infoExpID)) {
-        fetchExperimentalDesign(e);
-      }
-    }
-    for (Sample s : openbis.getSamplesWithParentsAndChildrenOfProjectBySearchService(projectID)) {
-
-      SampleType type = parseSampleType(s);
-      if (type.equals(SampleType.Q_BIOLOGICAL_ENTITY)) {
-        mapSampleToReadableOrganismName(s);
-      }
-      if (barcodeSamples.contains(type)) {
-        Date date = s.getRegistrationDetails().getRegistrationDate();
-        SimpleDateFormat dt1 = new SimpleDateFormat("yy-MM-dd");
-        String dt = dt1.format(date);
-        String expID = s.getExperimentIdentifierOrNull();
-        String expName = experimentsMap.get(expID).getProperties().get("Q_SECONDARY_NAME");
-        if (expName == null || expName.isEmpty())
-          expName = expID;
-        Tuple tpl = new Tuple(dt, expID);
-        if (experiments.containsKey(tpl)) {
-          ExperimentBarcodeSummary exp = experiments.get(tpl);
-          exp.increment();
-          exp.addSample(s);
-        } else {
-          String bioType = null;
-          switch (type) {
-            case Q_BIOLOGICAL_ENTITY:
-              bioType = "Source Species";
-              break;
-            case Q_BIOLOGICAL_SAMPLE:
-              bioType = "Tissue Extracts";
-              break;
-            case Q_TEST_SAMPLE:
-              bioType = s.getProperties().get("Q_SAMPLE_TYPE");
-              break;
-            case Q_NGS_SINGLE_SAMPLE_RUN:
-              String seqType = openbis.getExperimentById2(expID).get(0).getProperties().get("Q_SEQUENCING_TYPE");
-              if(seqType!=null) {
-                bioType = seqType + "seq";
-              } else {
-                bioType = "Sequencing";
-              }
-              break;
-            case Q_MHC_LIGAND_EXTRACT:
-              bioType = "MHC Ligands";
-              break;
-            // normal MS Runs use the Barcodes of Peptides or Proteins to register data and so are
-            // not listed here
-            case Q_MS_RUN:
-              bioType = "Wash Runs";
-              break;
-            case Q_BMI_GENERIC_IMAGING_RUN:
-              bioType =
-                  openbis.getExperimentById2(expID).get(0).getProperties().get("Q_BMI_MODALITY")
-                      + " runs";
-            default:
-              break;
+    final int request = projectRequest;
+    final String space = view.getSpaceCode();
+    final UI ui = UI.getCurrent();
+    view.setProjectLoading(true);
+    UIPolling.startJob(ui);
+
+    CompletableFuture<Set<Printer>> printerFuture = CompletableFuture.supplyAsync(
+        () -> printers.getPrintersForProject(project, liferayUserGroupList), executor);
+    CompletableFuture<ProjectSnapshot> snapshotFuture =
+        CompletableFuture.supplyAsync(() -> projectLoader.load(space, project), executor);
+    printerFuture.thenCombine(snapshotFuture, Pair::of)
+        .whenComplete((result, error) -> ui.access(() -> {
+          UIPolling.endJob(ui);
+          if (request != projectRequest) {
+            return;
           }
-          ExperimentBarcodeSummary b = new ExperimentBarcodeSummary(bioType, "1", expName, dt);
-          b.addSample(s);
-          experiments.put(tpl, b);
-        }
-      }
-    }
-    view.setSampleCodesToSpecies(sampleCodeToSpecies);
-    view.setExperiments(experiments.values());
-  }
-
-  private void mapSampleToReadableOrganismName(Sample s) {
-    String ncbiCode;
-    try {
-      ncbiCode = s.getProperties().get("Q_NCBI_ORGANISM");
-    } catch (NullPointerException e) {
-      return;
-    }
-    String species = taxonomyMap.get(ncbiCode);
-    try {
-      String[] speciesNames = species.split(" ");
-      species = speciesNames[0].charAt(0) + ". " + speciesNames[1]; // --> A. thaliana
-    } catch (ArrayIndexOutOfBoundsException e) {
-      LOG.warn("Could not shorten species: " + species);
-    }
-    sampleCodeToSpecies.put(s.getCode(), species);
-  }
-
-  private void fetchExperimentalDesign(Experiment designExperiment) {
-    StudyXMLParser studyParser = new StudyXMLParser();
-    // parse experimental design for later use
-    String xmlString = designExperiment.getProperties().get("Q_EXPERIMENTAL_SETUP");
-    JAXBElement<Qexperiment> expDesign = null;
-
-    try {
-      expDesign = studyParser.parseXMLString(xmlString);
-    } catch (JAXBException e) {
-      LOG.error("could not parse experimental design xml!");
-      e.printStackTrace();
-    }
-
-    Set<String> propertyLabels = new HashSet<>();
-    Set<String> experimentalFactorLabels = new HashSet<>();
-    Map<String, List<Property>> propsForSamples = new HashMap<>();
-    Map<Pair<String, String>, Property> experimentalFactorsForLabelsAndSamples = new HashMap<>();
-
-    if (expDesign != null) {
-      experimentalFactorLabels = studyParser.getFactorLabels(expDesign);
-      experimentalFactorsForLabelsAndSamples = studyParser.getFactorsForLabelsAndSamples(expDesign);
-
-      propsForSamples = studyParser.getPropertiesForSampleCode(expDesign);
-
-      for (List<Property> sampleProps : propsForSamples.values()) {
-        for (Property prop : sampleProps) {
-          propertyLabels.add(prop.getLabel());
-        }
-      }
-    }
-    List<String> availableProperties = new ArrayList<>();
-    availableProperties.addAll(propertyLabels);
-    availableProperties.addAll(experimentalFactorLabels);
-    view.setExperimentalDesignPropertiesForProject(availableProperties,
-        experimentalFactorsForLabelsAndSamples, propsForSamples);
+          view.setProjectLoading(false);
+          if (error != null) {
+            LOG.error("Could not load project " + project, error);
+            Styles.notification("Project could not be loaded",
+                "Please try again later or contact us.", Styles.NotificationType.ERROR);
+          } else {
+            showProject(result.getLeft(), result.getRight());
+          }
+        }));
   }
 
-  private SampleType parseSampleType(Sample s) {
-    SampleType type = null;
-    try {
-      type = SampleType.valueOf(s.getSampleTypeCode());
-    } catch (IllegalArgumentException e) {
-      LOG.warn(s.getSampleTypeCode()
-          + " does not seem to be a supported sample type. Consider adding it to the data model library enums.");
+  private void showProject(Set<Printer> projectPrinters, ProjectSnapshot snapshot) {
+    view.setPrinters(projectPrinters);
+    experimentsMap = snapshot.getExperiments();
+    ProjectDesign design = snapshot.getDesign();
+    if (design != null) {
+      view.setExperimentalDesignPropertiesForProject(design.getAvailableProperties(),
+          design.getExperimentalFactorsForLabelsAndSamples(), design.getPropsForSamples());
     }
-    return type;
+    sampleCodeToSpecies = snapshot.getSampleCodeToSpecies();
+    view.setSampleCodesToSpecies(sampleCodeToSpecies);
+    view.setExperiments(snapshot.getSummaries());
   }
 
-  private boolean isBlankOrWash(Sample s) {
+  private boolean isBlankOrWash(BarcodeSample s) {
     return SampleCodeFunctions.isMeasurementOfBarcode(s.getCode(), s.getSampleTypeCode())
-        && s.getParents().isEmpty();
+        && s.getParentCodes().isEmpty();
   }
 
   @Override
@@ -478,8 +359,8 @@ public class BarcodeController implements Observer {
     view.enableTubeLabelPreview(getUsefulSample());
   }
 
-  private Sample getUsefulSample() {
-    List<Sample> samples = view.getSelectedSamples();
+  private BarcodeSample getUsefulSample() {
+    List<BarcodeSample> samples = view.getSelectedSamples();
     if (samples.isEmpty())
       samples = view.getSelectedExperiments().iterator().next().getSamples();
     int i = 0;
@@ -517,9 +398,9 @@ public class BarcodeController implements Observer {
   }
 
   private List<IBarcodeBean> getBarcodeInfoFromSelections(
-      Collection<ExperimentBarcodeSummary> experiments, List<Sample> samples) {
+      Collection<ExperimentBarcodeSummary> experiments, List<BarcodeSample> samples) {
     List<IBarcodeBean> sampleBarcodes = new ArrayList<>();
-    List<Sample> openbisSamples = new ArrayList<>();
+    List<BarcodeSample> openbisSamples = new ArrayList<>();
     for (ExperimentBarcodeSummary b : experiments) {
       openbisSamples.addAll(b.getSamples());
     }
@@ -528,52 +409,21 @@ public class BarcodeController implements Observer {
     // samples)
     if (samples.size() < openbisSamples.size() && samples.size() != 0)
       openbisSamples = samples;
-    // Map<Sample, List<String>> parentMap = getParentMap(openbisSamples);
-    for (Sample s : openbisSamples) {
-      SampleType type = parseSampleType(s);
-      String bioType = "unknown";
-
-      if (sampleTypeToBioTypeField.containsKey(type)) {
-        String typeKey = sampleTypeToBioTypeField.get(type);
-        if (s.getProperties().containsKey(typeKey)) {
-          bioType = s.getProperties().get(typeKey);
-          if (type.equals(SampleType.Q_BIOLOGICAL_ENTITY)) {
-            bioType = sampleCodeToSpecies.get(s.getCode());
-          }
-        } else {
-          switch (type) {
-            case Q_MS_RUN:
-              bioType = "NGS RUN";
-              break;
-            case Q_BMI_GENERIC_IMAGING_RUN:
-              bioType = "Imaging RUN";
-              break;
-            default:
-          }
-        }
-      }
-      List<String> parents = parentsToStringList(s.getParents());
-      String parentString = StringUtils.join(parents, " ");
-      sampleBarcodes.add(new NewModelBarcodeBean(s.getCode(), view.getCodedString(s),
-          view.getInfo1(s, parentString), view.getInfo2(s, parentString), bioType, parents,
-          s.getProperties().get("Q_SECONDARY_NAME"), s.getProperties().get("Q_EXTERNALDB_ID")));
+    // Map<BarcodeSample, List<String>> parentMap = getParentMap(openbisSamples);
+    TranslatedFields fields = view.translate(openbisSamples);
+    for (int i = 0; i < openbisSamples.size(); i++) {
+      BarcodeSample s = openbisSamples.get(i);
+      sampleBarcodes.add(new NewModelBarcodeBean(s.getCode(), fields.getCodedString(i),
+          fields.getInfo1(i), fields.getInfo2(i), fields.getBioType(i), s.getParentCodes(),
+          s.getProperty("Q_SECONDARY_NAME"), s.getProperty("Q_EXTERNALDB_ID")));
     }
 
     return sampleBarcodes;
   }
 
-  private List<String> parentsToStringList(List<Sample> samples) {
-    List<String> res = new ArrayList<String>();
-    for (Sample s : samples) {
-      res.add(s.getCode());
-    }
-
-    return res;
-  }
-
-  protected Map<Sample, List<String>> getParentMap(List<Sample> samples) {
+  protected Map<BarcodeSample, List<String>> getParentMap(List<BarcodeSample> samples) {
     List<String> codes = new ArrayList<>();
-    for (Sample s : samples) {
+    for (BarcodeSample s : samples) {
       codes.add(s.getCode());
     }
     Map<String, Object> params = new HashMap<>();
@@ -592,8 +442,8 @@ public class BarcodeController implements Observer {
         parentMap.put(code, new ArrayList<>(Arrays.asList(parent)));
       }
     }
-    Map<Sample, List<String>> res = new HashMap<>();
-    for (Sample s : samples) {
+    Map<BarcodeSample, List<String>> res = new HashMap<>();
+    for (BarcodeSample s : samples) {
       List<String> prnts = parentMap.get(s.getCode());
       if (prnts == null)
         prnts = new ArrayList<>();
@@ -606,4 +456,8 @@ public class BarcodeController implements Observer {
   public DBManager getDbManager() {
     return dbManager;
   }
+
+  public LabelCountBuffer getLabelCountBuffer() {
+    return labelCounts;
+  }
 }
@@ -14,6 +14,7 @@ import life.qbic.portal.portlet.model.FileType;
 import life.qbic.portal.portlet.model.Person;
 import life.qbic.portal.portlet.processes.IReadyRunnable;
 import life.qbic.portal.portlet.processes.ProcessBuilderWrapper;
+import life.qbic.portal.portlet.processes.UIPolling;
 import life.qbic.portal.portlet.processes.UpdateProgressBar;
 import life.qbic.utils.TimeUtils;
 import org.json.simple.JSONArray;
@@ -23,8 +24,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.function.UnaryOperator;
 import com.vaadin.server.FileResource;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.ProgressBar;
@@ -123,11 +124,11 @@ public class BarcodeCreator {
           }
           // go to next page
           UI.getCurrent().access(ready);
-          UI.getCurrent().setPollInterval(-1);
+          UIPolling.endJob(UI.getCurrent());
         }
       });
+      UIPolling.startJob(UI.getCurrent());
       t.start();
-      UI.getCurrent().setPollInterval(200);
     } else {
       UI.getCurrent().access(ready);
     }
@@ -148,29 +149,53 @@ public class BarcodeCreator {
     return res;
   }
 
+  // common special characters used in latex which alter the interpretation of the following text
+  private static final boolean[] LATEX_SPECIAL_CHARACTERS =
+      lookupTable('%', '&', '$', '\\', '^', '_', '<', '>', '~', '{', '}', '#');
+  // characters the python scripts need escaped
+  private static final boolean[] LATEX_ESCAPED_CHARACTERS = lookupTable('%', '&', '$');
+
+  private static boolean[] lookupTable(char... characters) {
+    boolean[] table = new boolean[128];
+    for (char c : characters) {
+      table[c] = true;
+    }
+    return table;
+  }
+
+  private static boolean isIn(boolean[] table, char c) {
+    return c < table.length && table[c];
+  }
+
+  private static int indexOfAny(String input, boolean[] table) {
+    for (int i = 0; i < input.length(); i++) {
+      if (isIn(table, input.charAt(i)))
+        return i;
+    }
+    return -1;
+  }
+
   /**
    * Removes all latex specific special characters from a string
    *
    * @param input
-   * @return
+   * @return the trimmed input without special characters, the input itself if it contains none and
+   *         does not need to be trimmed
    */
   public static String removeLatexCharacters(String input) {
-    // common special characters used in latex which alter the interpretation of the following text
-    List<Character> latexSpecialCharacters =
-        new ArrayList<>(Arrays.asList('%', '&', '$', '\\', '^', '_', '<', '>', '~', '{', '}', '#'));
-
-    StringBuilder stringBuilder = new StringBuilder();
-
-    if (input != null) {
-      for (char c : input.toCharArray()) {
-        if (!latexSpecialCharacters.contains(c))
-          stringBuilder.append(c);
-      }
-    } else {
+    if (input == null)
       return "";
+    int first = indexOfAny(input, LATEX_SPECIAL_CHARACTERS);
+    if (first < 0)
+      return input.trim();
+
+    StringBuilder stringBuilder = new StringBuilder(input.length());
+    stringBuilder.append(input, 0, first);
+    for (int i = first + 1; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (!isIn(LATEX_SPECIAL_CHARACTERS, c))
+        stringBuilder.append(c);
     }
-
-
     return stringBuilder.toString().trim();
   }
 
@@ -178,29 +203,27 @@ public class BarcodeCreator {
    * Escapes %, & and $ from a String
    *
    * @param input
-   * @return
+   * @return the trimmed input with escaped characters, the input itself if nothing needs to be
+   *         escaped or trimmed
    */
   public static String escapeLatexCharacters(String input) {
-    // common special characters used in latex which alter the interpretation of the following text
-    List<Character> latexSpecialCharacters = new ArrayList<>(Arrays.asList('%', '&', '$'));
-
-    StringBuilder stringBuilder = new StringBuilder();
-
-    if (input != null) {
-      for (char c : input.toCharArray()) {
-        if (latexSpecialCharacters.contains(c))
-          stringBuilder.append('\\');
-        stringBuilder.append(c);
-      }
-    } else {
+    if (input == null)
       return "";
+    int first = indexOfAny(input, LATEX_ESCAPED_CHARACTERS);
+    if (first < 0)
+      return input.trim();
+
+    StringBuilder stringBuilder = new StringBuilder(input.length() + 8);
+    stringBuilder.append(input, 0, first);
+    for (int i = first; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (isIn(LATEX_ESCAPED_CHARACTERS, c))
+        stringBuilder.append('\\');
+      stringBuilder.append(c);
     }
-
-
     return stringBuilder.toString().trim();
   }
 
-
   /**
    * escapes all latex characters from every value string of IBarcodeBeans
    *
@@ -208,43 +231,46 @@ public class BarcodeCreator {
    * @return
    */
   public static List<IBarcodeBean> removeLatexCharactersFromBeans(List<IBarcodeBean> barcodeBeans) {
-    List<IBarcodeBean> barcodeBeansWithoutLatexCharacters = new ArrayList<>();
-    for (IBarcodeBean barcodeBean : barcodeBeans) {
-      String altInfoEscaped = removeLatexCharacters(barcodeBean.altInfo());
-      String firstInfoEscaped = removeLatexCharacters(barcodeBean.firstInfo());
-      String codeEscaped = removeLatexCharacters(barcodeBean.getCode());
-      String codedStringEscaped = removeLatexCharacters(barcodeBean.getCodedString());
-      String extIDEscaped = removeLatexCharacters(barcodeBean.getExtID());
-      String secondaryNameEscaped = removeLatexCharacters(barcodeBean.getSecondaryName());
-      String typeEscaped = removeLatexCharacters(barcodeBean.getType());
-
-      NewModelBarcodeBean newModelBarcodeBean =
-          new NewModelBarcodeBean(codeEscaped, codedStringEscaped, firstInfoEscaped, altInfoEscaped,
-              typeEscaped, barcodeBean.fetchParentIDs(), secondaryNameEscaped, extIDEscaped);
-      barcodeBeansWithoutLatexCharacters.add(newModelBarcodeBean);
-    }
-
-    return barcodeBeansWithoutLatexCharacters;
+    return sanitizeBeans(barcodeBeans, BarcodeCreator::removeLatexCharacters);
   }
 
   public static List<IBarcodeBean> escapeLatexCharactersFromBeans(List<IBarcodeBean> barcodeBeans) {
-    List<IBarcodeBean> barcodeBeansWithEscapedLatexCharacters = new ArrayList<>();
+    return sanitizeBeans(barcodeBeans, BarcodeCreator::escapeLatexCharacters);
+  }
+
+  // beans are only copied if one of their fields changed
+  private static List<IBarcodeBean> sanitizeBeans(List<IBarcodeBean> barcodeBeans,
+      UnaryOperator<String> sanitizer) {
+    List<IBarcodeBean> sanitizedBeans = new ArrayList<>(barcodeBeans.size());
     for (IBarcodeBean barcodeBean : barcodeBeans) {
-      String altInfoEscaped = escapeLatexCharacters(barcodeBean.altInfo());
-      String firstInfoEscaped = escapeLatexCharacters(barcodeBean.firstInfo());
-      String codeEscaped = escapeLatexCharacters(barcodeBean.getCode());
-      String codedStringEscaped = escapeLatexCharacters(barcodeBean.getCodedString());
-      String extIDEscaped = escapeLatexCharacters(barcodeBean.getExtID());
-      String secondaryNameEscaped = escapeLatexCharacters(barcodeBean.getSecondaryName());
-      String typeEscaped = escapeLatexCharacters(barcodeBean.getType());
-
-      NewModelBarcodeBean newModelBarcodeBean =
-          new NewModelBarcodeBean(codeEscaped, codedStringEscaped, firstInfoEscaped, altInfoEscaped,
-              typeEscaped, barcodeBean.fetchParentIDs(), secondaryNameEscaped, extIDEscaped);
-      barcodeBeansWithEscapedLatexCharacters.add(newModelBarcodeBean);
+      String altInfo = sanitizer.apply(barcodeBean.altInfo());
+      String firstInfo = sanitizer.apply(barcodeBean.firstInfo());
+      String code = sanitizer.apply(barcodeBean.getCode());
+      String codedString = sanitizer.apply(barcodeBean.getCodedString());
+      String extID = sanitizer.apply(barcodeBean.getExtID());
+      String secondaryName = sanitizer.apply(barcodeBean.getSecondaryName());
+      String type = sanitizer.apply(barcodeBean.getType());
+
+      if (isUnchanged(barcodeBean.altInfo(), altInfo)
+          && isUnchanged(barcodeBean.firstInfo(), firstInfo)
+          && isUnchanged(barcodeBean.getCode(), code)
+          && isUnchanged(barcodeBean.getCodedString(), codedString)
+          && isUnchanged(barcodeBean.getExtID(), extID)
+          && isUnchanged(barcodeBean.getSecondaryName(), secondaryName)
+          && isUnchanged(barcodeBean.getType(), type)) {
+        sanitizedBeans.add(barcodeBean);
+      } else {
+        sanitizedBeans.add(new NewModelBarcodeBean(code, codedString, firstInfo, altInfo, type,
+            barcodeBean.fetchParentIDs(), secondaryName, extID));
+      }
     }
+    return sanitizedBeans;
+  }
 
-    return barcodeBeansWithEscapedLatexCharacters;
+  // the sanitizers return unchanged values as they are and map null to "", which is no change
+  // worth a copy either, unset fields like the secondary name are null for most samples
+  private static boolean isUnchanged(String original, String sanitized) {
+    return sanitized == original || original == null && sanitized.isEmpty();
   }
 
   /**
@@ -327,11 +353,11 @@ public class BarcodeCreator {
           }
           // go to next page
           UI.getCurrent().access(ready);
-          UI.getCurrent().setPollInterval(-1);
+          UIPolling.endJob(UI.getCurrent());
         }
       });
+      UIPolling.startJob(UI.getCurrent());
       t.start();
-      UI.getCurrent().setPollInterval(200);
     } else {
       UI.getCurrent().access(ready);
     }
@@ -473,33 +499,22 @@ public class BarcodeCreator {
         LOG.error("Error: {}", pbd.getErrors());
         LOG.error("Last command sent: {}", cmd);
         UI.getCurrent().access(ready);
-        UI.getCurrent().setPollInterval(-1);
+        UIPolling.endJob(UI.getCurrent());
         ready.setSuccess(false);
         return;
       }
 
       // Finished
       ready.setSuccess(true);
-      try {
-        controller.getDbManager().addLabelCountEntry(printerName, printerLocation, space, userID,
-            projectName, getNumberOfAvailableBarcodes());
-        LOG.info(
-            "Printing process was logged to Table qbic_usermanagement_db.printed_label_counts.");
-      } catch (Exception e) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < e.getStackTrace().length; i++) {
-          sb.append(e.getStackTrace()[i]);
-        }
-        LOG.error(
-            "Printing process could NOT be logged to Table qbic_usermanagement_db.printed_label_counts: {}",
-            sb.toString());
-      }
+      // counts are written to qbic_usermanagement_db.printed_label_counts in the background
+      controller.getLabelCountBuffer().add(printerName, printerLocation, space, userID,
+          projectName, getNumberOfAvailableBarcodes());
 
       UI.getCurrent().access(ready);
-      UI.getCurrent().setPollInterval(-1);
+      UIPolling.endJob(UI.getCurrent());
     });
+    UIPolling.startJob(UI.getCurrent());
     t.start();
-    UI.getCurrent().setPollInterval(200);
   }
 
   // TODO
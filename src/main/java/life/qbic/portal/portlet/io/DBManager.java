@@ -16,22 +16,25 @@
 package life.qbic.portal.portlet.io;
 
 
+import java.lang.reflect.Array;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
-import com.liferay.portal.model.UserGroup;
-import com.vaadin.data.Property;
 import com.vaadin.data.util.sqlcontainer.SQLContainer;
 import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
 import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
 import com.vaadin.data.util.sqlcontainer.query.FreeformQuery;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import life.qbic.datamodel.printing.Printer;
 import life.qbic.portal.portlet.model.Affiliation;
+import life.qbic.portal.portlet.model.LabelCountKey;
 import life.qbic.portal.portlet.model.Person;
+import life.qbic.portal.portlet.util.TTLCache;
 import org.apache.commons.lang3.Validate;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -45,18 +48,62 @@ public class DBManager {
   private static final Logger LOG = LogManager.getLogger(DBManager.class);
   private static final AtomicInteger N_INSTANCES = new AtomicInteger(0);
 
+  private static final int MAX_IN_LIST_SIZE = 500;
+  private static final String LABEL_COUNT_INSERT =
+      "INSERT INTO printed_label_counts (printer_id, project_id, user_name, num_printed) "
+          + "SELECT labelprinter.id, projects.id, ?, ? FROM labelprinter, projects "
+          + "WHERE labelprinter.name = ? AND labelprinter.location = ? "
+          + "AND projects.openbis_project_identifier = ?";
+  private static final String LABEL_COUNT_UPSERT =
+      LABEL_COUNT_INSERT + " ON DUPLICATE KEY UPDATE num_printed = num_printed + ?";
+  private static final String LABEL_COUNT_UPDATE =
+      "UPDATE printed_label_counts SET num_printed = num_printed + ? WHERE user_name = ? "
+          + "AND printer_id IN (SELECT id FROM labelprinter WHERE name = ? AND location = ?) "
+          + "AND project_id IN "
+          + "(SELECT id FROM projects WHERE openbis_project_identifier = ?)";
+  private static final Set<String> LABEL_COUNT_KEY =
+      new HashSet<>(Arrays.asList("printer_id", "project_id", "user_name"));
+  // project names rarely change, so they are shared between all sessions for a while
+  private static final TTLCache<String, String> PROJECT_NAMES =
+      new TTLCache<>(10, TimeUnit.MINUTES);
+
   private final JDBCConnectionPool connectionPool;
+  private final DBMetrics metrics;
+  // whether printed_label_counts has its unique key, checked with the first count
+  private volatile Boolean labelCountKey;
+  // without the unique key, concurrent update-or-insert of the same count could insert it twice
+  private static final Object LABEL_COUNT_FALLBACK_LOCK = new Object();
 
   public DBManager(final DBConfig config) {
+    this(createConnectionPool(config), JmxDBMetrics.start());
+  }
+
+  /**
+   * Creates a DBManager working on an existing connection pool, e.g. an embedded database in tests
+   *
+   * @param connectionPool pool all units of work reserve their connection from
+   */
+  DBManager(final JDBCConnectionPool connectionPool) {
+    this(connectionPool, DBMetrics.NONE);
+  }
+
+  /**
+   * Creates a DBManager working on an existing connection pool that reports to the given metrics
+   *
+   * @param connectionPool pool all units of work reserve their connection from
+   * @param metrics records latency, rows and failures of every operation and pool acquire
+   */
+  DBManager(final JDBCConnectionPool connectionPool, final DBMetrics metrics) {
     final int nInstances = N_INSTANCES.incrementAndGet();
     if (nInstances > 1) {
       LOG.error("There are {} instances of DBManager right now. DBManager should be a singleton.",
           nInstances);
     }
-    this.connectionPool = createConnectionPool(config);
+    this.connectionPool = connectionPool;
+    this.metrics = metrics;
   }
 
-  private JDBCConnectionPool createConnectionPool(final DBConfig config) {
+  private static JDBCConnectionPool createConnectionPool(final DBConfig config) {
     try {
       return new SimpleJDBCConnectionPool(
           "org.mariadb.jdbc.Driver", "jdbc:mariadb://" + config.getHostname() + ":"
@@ -75,45 +122,192 @@ public class DBManager {
   }
 
   private Connection login() {
+    long start = System.nanoTime();
     try {
-      return connectionPool.reserveConnection();
+      Connection conn = connectionPool.reserveConnection();
+      metrics.recordPoolAcquire(System.nanoTime() - start, false);
+      return conn;
     } catch (SQLException e) {
+      metrics.recordPoolAcquire(System.nanoTime() - start, true);
       LOG.error("Could not get connection from pool", e);
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * One logical database operation. All statements of the operation, including nested lookups,
+   * are run on the single connection that is handed in.
+   *
+   * @param <T> result type of the operation
+   */
+  @FunctionalInterface
+  interface UnitOfWork<T> {
+
+    T execute(Connection conn) throws SQLException;
+  }
+
+  /**
+   * Reserves exactly one connection from the pool, runs the unit of work on it and releases the
+   * connection afterwards. Pool connections do not auto-commit, so changes are committed if the
+   * work succeeds and rolled back otherwise. Latency, rows and failures are recorded under the
+   * name of the operation, see {@link DBMetrics}.
+   *
+   * @param operation name of the public operation the work belongs to
+   * @param work the operation to run
+   * @return the result of the operation
+   * @throws SQLException if the operation failed
+   */
+  private <T> T runInUnitOfWork(String operation, UnitOfWork<T> work) throws SQLException {
+    long start = System.nanoTime();
+    boolean failed = true;
+    int rows = 0;
+    Connection conn = null;
+    try {
+      conn = login();
+      T res = work.execute(conn);
+      if (!conn.getAutoCommit()) {
+        conn.commit();
+      }
+      rows = countRows(res);
+      failed = false;
+      return res;
+    } catch (SQLException | RuntimeException e) {
+      if (conn != null) {
+        rollback(conn);
+      }
+      throw e;
+    } finally {
+      if (conn != null) {
+        logout(conn);
+      }
+      metrics.recordOperation(operation, System.nanoTime() - start, rows, failed);
+    }
+  }
+
+  private static int countRows(Object result) {
+    // ids, update counts and flags like -1, 0 or false are not rows
+    if (result == null || result instanceof Number || result instanceof Boolean) {
+      return 0;
+    }
+    if (result instanceof Collection) {
+      return ((Collection<?>) result).size();
+    }
+    if (result instanceof Map) {
+      return ((Map<?, ?>) result).size();
+    }
+    if (result.getClass().isArray()) {
+      return Array.getLength(result);
+    }
+    return 1;
+  }
+
+  private void rollback(Connection conn) {
+    try {
+      if (!conn.getAutoCommit()) {
+        conn.rollback();
+      }
+    } catch (SQLException e) {
+      LOG.error("Could not roll back unit of work", e);
+    }
+  }
+
   public Person getPersonForProject(String projectIdentifier, String role) {
+    try {
+      return runInUnitOfWork("getPersonForProject",
+          conn -> getPersonForProject(conn, projectIdentifier, role));
+    } catch (SQLException e) {
+      LOG.error("Could not get person for project due to database error", e);
+    }
+    return null;
+  }
+
+  private Person getPersonForProject(Connection conn, String projectIdentifier, String role)
+      throws SQLException {
     String sql =
         "SELECT * FROM person LEFT JOIN projects_persons ON person.id = projects_persons.person_id "
             + "LEFT JOIN projects ON projects_persons.project_id = projects.id WHERE "
             + "projects.openbis_project_identifier = ? AND projects_persons.project_role = ?";
     Person res = null;
 
-    Connection conn = login();
     try (PreparedStatement statement = conn.prepareStatement(sql)) {
       statement.setString(1, projectIdentifier);
       statement.setString(2, role);
 
-      ResultSet rs = statement.executeQuery();
-
-
-      while (rs.next()) {
-        String title = rs.getString("title");
-        String userID = rs.getString("user_id");
-        String first = rs.getString("first_name");
-        String last = rs.getString("last_name");
-        String email = rs.getString("email");
-        Affiliation affiliation = getAffiliationFromProjectIDAndRole(projectIdentifier, role);
-
-        res = new Person(userID, title, first, last, email, affiliation);
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          String title = rs.getString("title");
+          String userID = rs.getString("user_id");
+          String first = rs.getString("first_name");
+          String last = rs.getString("last_name");
+          String email = rs.getString("email");
+          Affiliation affiliation =
+              getAffiliationFromProjectIDAndRole(conn, projectIdentifier, role);
+
+          res = new Person(userID, title, first, last, email, affiliation);
+        }
       }
-    } catch (SQLException e) {
-      LOG.error("Could not get person for project due to database error", e);
-    } finally {
-      logout(conn);
     }
+    return res;
+  }
 
+  /**
+   * Fetches the persons having one of the given roles in a project, including their affiliations,
+   * with a single joined query. If several persons share a role, the last one found is used, like
+   * in {@link #getPersonForProject(String, String)}.
+   *
+   * @param projectIdentifier openBIS identifier of the project, e.g. /SPACE/QABCD
+   * @param roles project roles to look for, e.g. PI and Manager
+   * @return map from role to the person having it, roles without a person are missing
+   */
+  public Map<String, Person> getPersonsForProject(String projectIdentifier,
+      Collection<String> roles) {
+    Map<String, Person> res = new HashMap<>();
+    if (roles.isEmpty()) {
+      return res;
+    }
+    String sql = "SELECT projects_persons.project_role, person.user_id, person.title, "
+        + "person.first_name, person.last_name, person.email, affiliation.id AS affiliation_id, "
+        + "affiliation.organization, affiliation.address_addition, affiliation.street, "
+        + "affiliation.postal_code, affiliation.city, affiliation.country FROM projects "
+        + "JOIN projects_persons ON projects.id = projects_persons.project_id "
+        + "JOIN person ON person.id = projects_persons.person_id "
+        + "LEFT JOIN person_affiliation ON person.id = person_affiliation.person_id "
+        + "LEFT JOIN affiliation ON affiliation.id = person_affiliation.affiliation_id "
+        + "WHERE projects.openbis_project_identifier = ? AND projects_persons.project_role IN ("
+        + String.join(", ", Collections.nCopies(roles.size(), "?")) + ")";
+    try {
+      return runInUnitOfWork("getPersonsForProject", conn -> {
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+          int i = 1;
+          statement.setString(i++, projectIdentifier);
+          for (String role : roles) {
+            statement.setString(i++, role);
+          }
+          try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+              Affiliation affiliation = null;
+              int affiliationID = rs.getInt("affiliation_id");
+              if (!rs.wasNull()) {
+                String addressAddition = rs.getString("address_addition");
+                if (addressAddition == null) {
+                  addressAddition = "";
+                }
+                affiliation = new Affiliation(affiliationID, rs.getString("organization"),
+                    addressAddition, rs.getString("street"), rs.getString("postal_code"),
+                    rs.getString("city"), rs.getString("country"));
+              }
+              res.put(rs.getString("project_role"),
+                  new Person(rs.getString("user_id"), rs.getString("title"),
+                      rs.getString("first_name"), rs.getString("last_name"),
+                      rs.getString("email"), affiliation));
+            }
+          }
+        }
+        return res;
+      });
+    } catch (SQLException e) {
+      LOG.error("Could not get persons for project due to database error", e);
+    }
     return res;
   }
 
@@ -123,33 +317,27 @@ public class DBManager {
    * @param id Affiliation ID!
    * @return Found Affiliation with address, group etc
    */
-  private Affiliation getAffiliationWithID(int id) {
+  private Affiliation getAffiliationWithID(Connection conn, int id) throws SQLException {
     Affiliation res = null;
     String sql = "SELECT * from affiliation WHERE id = ?";
 
-    Connection conn = login();
-    PreparedStatement statement = null;
-    try {
-      statement = conn.prepareStatement(sql);
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
       statement.setInt(1, id);
-      ResultSet rs = statement.executeQuery();
-      while (rs.next()) {
-        String organization = rs.getString("organization");
-        String addressAddition = rs.getString("address_addition");
-        if (addressAddition == null) {
-          addressAddition = "";
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          String organization = rs.getString("organization");
+          String addressAddition = rs.getString("address_addition");
+          if (addressAddition == null) {
+            addressAddition = "";
+          }
+          String street = rs.getString("street");
+          String zipCode = rs.getString("postal_code");
+          String city = rs.getString("city");
+          String country = rs.getString("country");
+
+          res = new Affiliation(id, organization, addressAddition, street, zipCode, city, country);
         }
-        String street = rs.getString("street");
-        String zipCode = rs.getString("postal_code");
-        String city = rs.getString("city");
-        String country = rs.getString("country");
-
-        res = new Affiliation(id, organization, addressAddition, street, zipCode, city, country);
       }
-    } catch (SQLException e) {
-      LOG.error("Could not get affiliation with ID", e);
-    } finally {
-      logout(conn);
     }
     return res;
   }
@@ -160,27 +348,31 @@ public class DBManager {
    * @return AffiliationID, forwarded to getAffiliationWithID
    */
   public int getAffiliationIDForPersonID(Integer personID) {
+    try {
+      return runInUnitOfWork("getAffiliationIDForPersonID",
+          conn -> getAffiliationIDForPersonID(conn, personID));
+    } catch (SQLException e) {
+      LOG.error("Could not get affiliation ID", e);
+    }
+    return -1;
+  }
+
+  private int getAffiliationIDForPersonID(Connection conn, int personID) throws SQLException {
     String lnk = "person_affiliation";
-    String sql = "SELECT person.*, affiliation.* FROM person, affiliation, " + lnk
-        + " WHERE person.id = " + Integer.toString(personID) + " AND person.id = " + lnk
-        + ".person_id and affiliation.id = " + lnk + ".affiliation_id";
-    Connection conn = login();
+    String sql = "SELECT affiliation.id AS affiliation_id FROM person, affiliation, " + lnk
+        + " WHERE person.id = ? AND person.id = " + lnk + ".person_id and affiliation.id = " + lnk
+        + ".affiliation_id";
 
     int affiliationID = -1;
 
     try (PreparedStatement statement = conn.prepareStatement(sql)) {
-      ResultSet rs = statement.executeQuery();
-      while (rs.next()) {
-        affiliationID = rs.getInt("affiliation.id");
-
+      statement.setInt(1, personID);
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          affiliationID = rs.getInt("affiliation_id");
+        }
       }
-      statement.close();
-    } catch (SQLException e) {
-      LOG.error("Could not get affiliation ID", e);
-    } finally {
-      logout(conn);
     }
-
     return affiliationID;
   }
 
@@ -192,195 +384,242 @@ public class DBManager {
    * @return Affiliation
    */
   public Affiliation getAffiliationFromProjectIDAndRole(String projectIdentifier, String role) {
+    try {
+      return runInUnitOfWork("getAffiliationFromProjectIDAndRole",
+          conn -> getAffiliationFromProjectIDAndRole(conn, projectIdentifier, role));
+    } catch (SQLException e) {
+      LOG.error("Could not get affiliation from project", e);
+    }
+    return null;
+  }
+
+  private Affiliation getAffiliationFromProjectIDAndRole(Connection conn,
+      String projectIdentifier, String role) throws SQLException {
     String sql =
         "SELECT projects_persons.*, projects.* FROM projects_persons, projects WHERE projects.openbis_project_identifier = ?"
             + " AND projects.id = projects_persons.project_id AND projects_persons.project_role = ?";
 
     int id = -1;
-    Affiliation affiliationOfPerson = null;
 
-    Connection conn = login();
     try (PreparedStatement statement = conn.prepareStatement(sql)) {
       statement.setString(1, projectIdentifier);
       statement.setString(2, role);
 
-      ResultSet rs = statement.executeQuery();
-
-      while (rs.next()) {
-        id = rs.getInt("person_id");
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          id = rs.getInt("person_id");
+        }
       }
-
-      int affiliationID = getAffiliationIDForPersonID(id);
-      affiliationOfPerson = getAffiliationWithID(affiliationID);
-
-
-    } catch (SQLException e) {
-      LOG.error("Could not get affiliation from project", e);
-    } finally {
-      logout(conn);
     }
-
-    return affiliationOfPerson;
+    int affiliationID = getAffiliationIDForPersonID(conn, id);
+    return getAffiliationWithID(conn, affiliationID);
   }
 
   public String getProjectName(String projectIdentifier) {
-    String sql = "SELECT short_title from projects WHERE openbis_project_identifier = ?";
-    String res = "";
-    Connection conn = login();
+    String res = getProjectNames(Collections.singletonList(projectIdentifier))
+        .get(projectIdentifier);
+    return res == null ? "" : res;
+  }
+
+  /**
+   * Returns the short titles of a number of projects. Titles are cached for all sessions for a few
+   * minutes, titles that are not cached are fetched with a single query.
+   *
+   * @param projectIdentifiers openBIS identifiers of the projects, e.g. /SPACE/QABCD
+   * @return map from project identifier to short title, projects without title are missing
+   */
+  public Map<String, String> getProjectNames(Collection<String> projectIdentifiers) {
+    return PROJECT_NAMES.getAll(projectIdentifiers, this::loadProjectNames);
+  }
+
+  /**
+   * Fetches the short titles of a number of projects from the database, bypassing the cache
+   *
+   * @return map from project identifier to short title, null if the titles could not be fetched
+   */
+  Map<String, String> loadProjectNames(Collection<String> projectIdentifiers) {
+    List<String> identifiers = new ArrayList<>(projectIdentifiers);
     try {
-      PreparedStatement statement = conn.prepareStatement(sql);
-      statement.setString(1, projectIdentifier);
-      ResultSet rs = statement.executeQuery();
-      if (rs.next()) {
-        res = rs.getString(1);
-      }
+      return runInUnitOfWork("getProjectNames", conn -> {
+        Map<String, String> res = new HashMap<>();
+        for (int from = 0; from < identifiers.size(); from += MAX_IN_LIST_SIZE) {
+          List<String> chunk =
+              identifiers.subList(from, Math.min(from + MAX_IN_LIST_SIZE, identifiers.size()));
+          String sql =
+              "SELECT openbis_project_identifier, short_title from projects WHERE openbis_project_identifier IN ("
+                  + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+          try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            for (int i = 0; i < chunk.size(); i++) {
+              statement.setString(i + 1, chunk.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+              while (rs.next()) {
+                res.put(rs.getString(1), rs.getString(2));
+              }
+            }
+          }
+        }
+        return res;
+      });
     } catch (SQLException e) {
       LOG.error("SQL operation unsuccessful:", e);
     } catch (NullPointerException n) {
       LOG.error("Could not reach SQL database, resuming without project names.", n);
-    } finally {
-      logout(conn);
     }
-    return res;
+    return null;
   }
 
   public int isProjectInDB(String projectIdentifier) {
+    try {
+      return runInUnitOfWork("isProjectInDB", conn -> isProjectInDB(conn, projectIdentifier));
+    } catch (SQLException e) {
+      LOG.error("SQL operation unsuccessful", e);
+    }
+    return -1;
+  }
+
+  private int isProjectInDB(Connection conn, String projectIdentifier) throws SQLException {
     LOG.info("Looking for project {} in the DB", projectIdentifier);
     String sql = "SELECT * from projects WHERE openbis_project_identifier = ?";
     int res = -1;
-    Connection conn = login();
-    try {
-      PreparedStatement statement = conn.prepareStatement(sql);
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
       statement.setString(1, projectIdentifier);
-      ResultSet rs = statement.executeQuery();
-      if (rs.next()) {
-        res = rs.getInt("id");
-        LOG.info("project found!");
+      try (ResultSet rs = statement.executeQuery()) {
+        if (rs.next()) {
+          res = rs.getInt("id");
+          LOG.info("project found!");
+        }
       }
-    } catch (SQLException e) {
-      LOG.error("SQL operation unsuccessful", e);
-    } finally {
-      logout(conn);
     }
     return res;
   }
 
   public int addProjectToDB(String projectIdentifier, String projectName) {
-    int exists = isProjectInDB(projectIdentifier);
-    if (exists < 0) {
-      LOG.info("Trying to add project {} to the person DB", projectIdentifier);
-      String sql = "INSERT INTO projects (openbis_project_identifier, short_title) VALUES(?, ?)";
-      Connection conn = login();
-      try (PreparedStatement statement =
-          conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-        statement.setString(1, projectIdentifier);
-        statement.setString(2, projectName);
-        statement.execute();
-        ResultSet rs = statement.getGeneratedKeys();
-        if (rs.next()) {
-          LOG.info("Successful.");
-          return rs.getInt(1);
+    try {
+      int id = runInUnitOfWork("addProjectToDB", conn -> {
+        int exists = isProjectInDB(conn, projectIdentifier);
+        if (exists >= 0) {
+          return exists;
         }
-      } catch (SQLException e) {
-        LOG.error("SQL operation unsuccessful", e);
-      } finally {
-        logout(conn);
-      }
-      return -1;
+        LOG.info("Trying to add project {} to the person DB", projectIdentifier);
+        String sql = "INSERT INTO projects (openbis_project_identifier, short_title) VALUES(?, ?)";
+        try (PreparedStatement statement =
+            conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+          statement.setString(1, projectIdentifier);
+          statement.setString(2, projectName);
+          statement.execute();
+          try (ResultSet rs = statement.getGeneratedKeys()) {
+            if (rs.next()) {
+              LOG.info("Successful.");
+              return rs.getInt(1);
+            }
+          }
+        }
+        return -1;
+      });
+      // the project may have been cached as unknown
+      PROJECT_NAMES.invalidate(projectIdentifier);
+      return id;
+    } catch (SQLException e) {
+      LOG.error("SQL operation unsuccessful", e);
     }
-    return exists;
+    return -1;
   }
 
   public boolean hasPersonRoleInProject(int personID, int projectID, String role) {
+    try {
+      return runInUnitOfWork("hasPersonRoleInProject",
+          conn -> hasPersonRoleInProject(conn, personID, projectID, role));
+    } catch (SQLException e) {
+      LOG.error("SQL operation unsuccessful", e);
+    }
+    return false;
+  }
+
+  private boolean hasPersonRoleInProject(Connection conn, int personID, int projectID,
+      String role) throws SQLException {
     LOG.info("Checking if person already has this role in the project.");
     String sql =
         "SELECT * from projects_persons WHERE person_id = ? AND project_id = ? and project_role = ?";
     boolean res = false;
-    Connection conn = login();
-    try {
-      PreparedStatement statement = conn.prepareStatement(sql);
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
       statement.setInt(1, personID);
       statement.setInt(2, projectID);
       statement.setString(3, role);
-      ResultSet rs = statement.executeQuery();
-      if (rs.next()) {
-        res = true;
-        LOG.info("person already has this role!");
+      try (ResultSet rs = statement.executeQuery()) {
+        if (rs.next()) {
+          res = true;
+          LOG.info("person already has this role!");
+        }
       }
-    } catch (SQLException e) {
-      LOG.error("SQL operation unsuccessful", e);
-    } finally {
-      logout(conn);
     }
     return res;
   }
 
   public void addPersonToProject(int projectID, int personID, String role) {
-    if (!hasPersonRoleInProject(personID, projectID, role)) {
-      LOG.info("Trying to add person with role {} to a project.", role);
-      String sql =
-          "INSERT INTO projects_persons (project_id, person_id, project_role) VALUES(?, ?, ?)";
-      Connection conn = login();
-      try (PreparedStatement statement =
-          conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-        statement.setInt(1, projectID);
-        statement.setInt(2, personID);
-        statement.setString(3, role);
-        statement.execute();
-        LOG.info("Successful.");
-      } catch (SQLException e) {
-        LOG.error("SQL operation unsuccessful: ", e);
-      } finally {
-        logout(conn);
-      }
+    try {
+      runInUnitOfWork("addPersonToProject", conn -> {
+        if (hasPersonRoleInProject(conn, personID, projectID, role)) {
+          return null;
+        }
+        LOG.info("Trying to add person with role {} to a project.", role);
+        String sql =
+            "INSERT INTO projects_persons (project_id, person_id, project_role) VALUES(?, ?, ?)";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+          statement.setInt(1, projectID);
+          statement.setInt(2, personID);
+          statement.setString(3, role);
+          statement.execute();
+          LOG.info("Successful.");
+        }
+        return null;
+      });
+    } catch (SQLException e) {
+      LOG.error("SQL operation unsuccessful: ", e);
     }
   }
 
   public int addExperimentToDB(String id) {
-    int exists = isExpInDB(id);
-    if (exists < 0) {
-      String sql = "INSERT INTO experiments (openbis_experiment_identifier) VALUES(?)";
-      Connection conn = login();
-      try (PreparedStatement statement =
-          conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-        statement.setString(1, id);
-        statement.execute();
-        ResultSet rs = statement.getGeneratedKeys();
-        if (rs.next()) {
-          return rs.getInt(1);
+    try {
+      return runInUnitOfWork("addExperimentToDB", conn -> {
+        int exists = isExpInDB(conn, id);
+        if (exists >= 0) {
+          LOG.info("added experiment do mysql db");
+          return exists;
         }
-      } catch (SQLException e) {
-        LOG.error("Was trying to add experiment {} to the person DB", id);
-        LOG.error("SQL operation unsuccessful", e);
-      } finally {
-        logout(conn);
-      }
-      return -1;
+        String sql = "INSERT INTO experiments (openbis_experiment_identifier) VALUES(?)";
+        try (PreparedStatement statement =
+            conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+          statement.setString(1, id);
+          statement.execute();
+          try (ResultSet rs = statement.getGeneratedKeys()) {
+            if (rs.next()) {
+              return rs.getInt(1);
+            }
+          }
+        }
+        return -1;
+      });
+    } catch (SQLException e) {
+      LOG.error("Was trying to add experiment {} to the person DB", id);
+      LOG.error("SQL operation unsuccessful", e);
     }
-    LOG.info("added experiment do mysql db");
-
-    return exists;
+    return -1;
   }
 
-  private int isExpInDB(String id) {
+  private int isExpInDB(Connection conn, String id) throws SQLException {
     LOG.info("Looking for experiment " + id + " in the DB");
     String sql = "SELECT * from experiments WHERE openbis_experiment_identifier = ?";
     int res = -1;
-    Connection conn = login();
-    try {
-      PreparedStatement statement = conn.prepareStatement(sql);
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
       statement.setString(1, id);
-      ResultSet rs = statement.executeQuery();
-      if (rs.next()) {
-        LOG.info("experiment found!");
-        res = rs.getInt("id");
+      try (ResultSet rs = statement.executeQuery()) {
+        if (rs.next()) {
+          LOG.info("experiment found!");
+          res = rs.getInt("id");
+        }
       }
-    } catch (SQLException e) {
-      LOG.error("SQL operation unsuccessful", e);
-    } finally {
-      logout(conn);
     }
-
     return res;
   }
 
@@ -388,223 +627,349 @@ public class DBManager {
     if (expID == 0 || personID == 0)
       return;
 
-    if (!hasPersonRoleInExperiment(personID, expID, role)) {
-      LOG.info("Trying to add person with role {} to an experiment.", role);
-      String sql =
-          "INSERT INTO experiments_persons (experiment_id, person_id, experiment_role) VALUES(?, ?, ?)";
-      Connection conn = login();
-      try (PreparedStatement statement =
-          conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-        statement.setInt(1, expID);
-        statement.setInt(2, personID);
-        statement.setString(3, role);
-        statement.execute();
-        LOG.info("Successful.");
-      } catch (SQLException e) {
-        LOG.error("SQL operation unsuccessful ", e);
-      } finally {
-        logout(conn);
-      }
+    try {
+      runInUnitOfWork("addPersonToExperiment", conn -> {
+        if (hasPersonRoleInExperiment(conn, personID, expID, role)) {
+          return null;
+        }
+        LOG.info("Trying to add person with role {} to an experiment.", role);
+        String sql =
+            "INSERT INTO experiments_persons (experiment_id, person_id, experiment_role) VALUES(?, ?, ?)";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+          statement.setInt(1, expID);
+          statement.setInt(2, personID);
+          statement.setString(3, role);
+          statement.execute();
+          LOG.info("Successful.");
+        }
+        return null;
+      });
+    } catch (SQLException e) {
+      LOG.error("SQL operation unsuccessful ", e);
     }
   }
 
-  private boolean hasPersonRoleInExperiment(int personID, int expID, String role) {
+  private boolean hasPersonRoleInExperiment(Connection conn, int personID, int expID, String role)
+      throws SQLException {
     LOG.info("Checking if person already has this role in the experiment.");
     String sql =
         "SELECT * from experiments_persons WHERE person_id = ? AND experiment_id = ? and experiment_role = ?";
     boolean res = false;
-    Connection conn = login();
-    try {
-      PreparedStatement statement = conn.prepareStatement(sql);
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
       statement.setInt(1, personID);
       statement.setInt(2, expID);
       statement.setString(3, role);
-      ResultSet rs = statement.executeQuery();
-      if (rs.next()) {
-        res = true;
-        LOG.info("person already has this role!");
+      try (ResultSet rs = statement.executeQuery()) {
+        if (rs.next()) {
+          res = true;
+          LOG.info("person already has this role!");
+        }
       }
-    } catch (SQLException e) {
-      LOG.error("SQL operation unsuccessful", e);
-    } finally {
-      logout(conn);
     }
-
     return res;
   }
 
-  // TODO unify to user group approach
-  public Set<Printer> getPrintersForProject(String project, List<UserGroup> liferayUserGroupList) {
-    Set<Printer> res = new HashSet<Printer>();
-    // Printers associated with projects
-    String sql =
-        "SELECT projects.*, printer_project_association.*, labelprinter.* FROM projects, printer_project_association, labelprinter "
-            + "WHERE projects.openbis_project_identifier LIKE ? "
-            + "AND projects.id = printer_project_association.project_id "
-            + "AND labelprinter.id = printer_project_association.printer_id";
-    Connection conn = login();
-
-    try (PreparedStatement statement = conn.prepareStatement(sql)) {
-      statement.setString(1, "%" + project);
-      ResultSet rs = statement.executeQuery();
-
-      while (rs.next()) {
-        String location = rs.getString("location");
-        String name = rs.getString("name");
-        String ip = rs.getString("url");
-        Printer.PrinterType type = Printer.PrinterType.fromString(rs.getString("type"));
-        boolean adminOnly = rs.getBoolean("admin_only");
-        String userGroup = rs.getString("user_group");
-        // QBiC printer for admin users
-        if (!adminOnly)
-          res.add(new Printer(location, name, ip, type, adminOnly, userGroup));
-      }
-    } catch (Exception e) {
-      LOG.error("Could not get printers", e);
-    } finally {
-      logout(conn);
-    }
-
-    // Printers associated with user groups
-    sql = "SELECT * FROM labelprinter";
-    conn = login();
-    try (PreparedStatement statement = conn.prepareStatement(sql)) {
-      ResultSet rs = statement.executeQuery();
-
-      while (rs.next()) {
-        String location = rs.getString("location");
-        String name = rs.getString("name");
-        String ip = rs.getString("url");
-        Printer.PrinterType type = Printer.PrinterType.fromString(rs.getString("type"));
-        boolean adminOnly = rs.getBoolean("admin_only");
-        String userGroup = rs.getString("user_group");
-        if (adminOnly)
-          res.add(new Printer(location, name, ip, type, adminOnly, userGroup));
-
-        for (UserGroup ug : liferayUserGroupList) {
-          if (ug.getName().equalsIgnoreCase(userGroup))
-            res.add(new Printer(location, name, ip, type, adminOnly, userGroup));
-
+  /**
+   * Loads all label printers together with the projects they are associated with, in one query.
+   * Used to fill the {@link PrinterRegistry}.
+   *
+   * @return list of all printers, null if the printers could not be loaded
+   */
+  public List<PrinterRegistry.Entry> getPrintersWithProjects() {
+    String sql = "SELECT labelprinter.*, projects.openbis_project_identifier FROM labelprinter "
+        + "LEFT JOIN printer_project_association "
+        + "ON labelprinter.id = printer_project_association.printer_id "
+        + "LEFT JOIN projects ON projects.id = printer_project_association.project_id";
+    try {
+      return runInUnitOfWork("getPrintersWithProjects", conn -> {
+        Map<Integer, PrinterRegistry.Entry> printersByID = new LinkedHashMap<>();
+        try (PreparedStatement statement = conn.prepareStatement(sql);
+            ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            PrinterRegistry.Entry entry = printersByID.get(rs.getInt("id"));
+            if (entry == null) {
+              String location = rs.getString("location");
+              String name = rs.getString("name");
+              String ip = rs.getString("url");
+              Printer.PrinterType type = Printer.PrinterType.fromString(rs.getString("type"));
+              boolean adminOnly = rs.getBoolean("admin_only");
+              String userGroup = rs.getString("user_group");
+              entry = new PrinterRegistry.Entry(
+                  new Printer(location, name, ip, type, adminOnly, userGroup), userGroup);
+              printersByID.put(rs.getInt("id"), entry);
+            }
+            String project = rs.getString("openbis_project_identifier");
+            if (project != null) {
+              entry.addProject(project);
+            }
+          }
         }
-      }
+        return new ArrayList<>(printersByID.values());
+      });
     } catch (Exception e) {
       LOG.error("Could not get printers", e);
-      res.add(new Printer("QBiC LAB", "TSC_TTP-343C", "printserv.qbic.uni-tuebingen.de",
-          Printer.PrinterType.Label_Printer, true, ""));
-    } finally {
-      logout(conn);
     }
-    LOG.debug("Found {}  printers for this user and project.", res.size());
-
-    return res;
+    return null;
   }
 
-  public void addLabelCountEntry(String printerName, String printerLocation, String projectSpace,
+  /**
+   * Adds a number of printed labels to the count of a printer, project and user. Printer and
+   * project IDs are resolved and the count is inserted or incremented in a single atomic upsert,
+   * which relies on the unique key of printed_label_counts over (printer_id, project_id,
+   * user_name), see {@link #hasLabelCountKey(Connection)}.
+   *
+   * @return the new number of labels printed by this user for the project on this printer, -1 if
+   *         the printer or project is unknown or the count could not be stored
+   */
+  public int addLabelCountEntry(String printerName, String printerLocation, String projectSpace,
       String userName, String subProject, int numLabels) {
-    String selectPrinterID = getPrinterIDQuery(printerName, printerLocation);
-    String selectProjectID = getProjektIDQuery(projectSpace, subProject);
-    String sql;
-    int old_num_printed = getNumExistingPrinted(selectPrinterID, selectProjectID, userName);
-    if (old_num_printed > -1) {
-      StringBuilder sb = new StringBuilder("UPDATE printed_label_counts SET num_printed = '");
-      numLabels += old_num_printed;
-      sb.append(Integer.toString(numLabels));
-      sb.append("' WHERE printer_id = (");
-      sb.append(selectPrinterID);
-      sb.append(") AND project_id = (");
-      sb.append(selectProjectID);
-      sb.append(") AND user_name = '");
-      sb.append(userName);
-      sb.append("';");
-      sql = sb.toString();
-    } else {
-      StringBuilder sb = new StringBuilder(
-          "INSERT INTO printed_label_counts (printer_id, project_id, user_name, num_printed) VALUES ((");
-      sb.append(selectPrinterID);
-      sb.append("),(");
-      sb.append(selectProjectID);
-      sb.append("),'");
-      sb.append(userName);
-      sb.append("','");
-      sb.append(Integer.toString(numLabels));
-      sb.append("');");
-      sql = sb.toString();
-    }
-    executeFreeQuery(sql);
-  }
-
-  private int getNumExistingPrinted(String selectPrinterID, String selectProjectID,
-      String userName) {
-    StringBuilder sb = new StringBuilder("SELECT * FROM printed_label_counts WHERE printer_id = (");
-    sb.append(selectPrinterID);
-    sb.append(") AND project_id = (");
-    sb.append(selectProjectID);
-    sb.append(") AND user_name = '");
-    sb.append(userName);
-    sb.append("';");
-
+    String projectIdentifier = "/" + projectSpace + "/" + subProject;
+    String total = "SELECT printed_label_counts.num_printed FROM printed_label_counts, "
+        + "labelprinter, projects WHERE printed_label_counts.printer_id = labelprinter.id "
+        + "AND printed_label_counts.project_id = projects.id "
+        + "AND printed_label_counts.user_name = ? AND labelprinter.name = ? "
+        + "AND labelprinter.location = ? AND projects.openbis_project_identifier = ?";
     try {
-      SQLContainer s = loadTableFromQuery(sb.toString());
-      if (s.getItemIds().size() > 0) {
-
-        // This somehow works to access an entry, however the loop should have exactly one iteration
-        for (Object itemId : s.getItemIds()) {
-          Property property = s.getContainerProperty(itemId, "num_printed");
-          Object data = property.getValue();
-          return Integer.parseInt(data.toString());
+      return runLabelCountUnit("addLabelCountEntry", conn -> {
+        if (addLabelCount(conn, new LabelCountKey(printerName, printerLocation, projectSpace,
+            subProject, userName), numLabels) == 0) {
+          LOG.warn("Printer {} ({}) or project {} not found, printed labels were not counted.",
+              printerName, printerLocation, projectIdentifier);
+          return -1;
         }
-      }
-    } catch (SQLException ignored) {
-
+        try (PreparedStatement statement = conn.prepareStatement(total)) {
+          statement.setString(1, userName);
+          statement.setString(2, printerName);
+          statement.setString(3, printerLocation);
+          statement.setString(4, projectIdentifier);
+          try (ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : -1;
+          }
+        }
+      });
+    } catch (SQLException e) {
+      LOG.error("Could not count printed labels", e);
     }
-
     return -1;
   }
 
-  public SQLContainer loadTableFromQuery(String query) throws SQLException {
-    FreeformQuery freeformQuery = new FreeformQuery(query, connectionPool);
-    return new SQLContainer(freeformQuery);
+  /**
+   * Adds a number of coalesced label counts in one JDBC batch, using the same upsert as
+   * {@link #addLabelCountEntry(String, String, String, String, String, int)}. If the batch fails
+   * because of the values of a count, the counts are added one by one, so a count that can never
+   * be stored does not hold back the others. Counts of unknown printers or projects and counts
+   * the database rejects are logged and dropped.
+   *
+   * @param labelCounts number of printed labels per printer, project and user
+   * @return counts that could not be stored for now, e.g. because the database is not available,
+   *         and should be added again later. Empty if all counts were stored or dropped.
+   */
+  public Map<LabelCountKey, Integer> addLabelCountEntries(Map<LabelCountKey, Integer> labelCounts) {
+    if (labelCounts.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    List<Map.Entry<LabelCountKey, Integer>> entries = new ArrayList<>(labelCounts.entrySet());
+    try {
+      int[] updated =
+          runLabelCountUnit("addLabelCountEntries", conn -> addLabelCountBatch(conn, entries));
+      for (int i = 0; i < updated.length; i++) {
+        if (updated[i] == 0) {
+          warnLabelCountNotStored(entries.get(i));
+        }
+      }
+      return Collections.emptyMap();
+    } catch (SQLException e) {
+      if (!isRejectedValue(e)) {
+        LOG.error("Could not count printed labels", e);
+        return labelCounts;
+      }
+      LOG.warn("Could not count printed labels in one batch, counting them one by one.", e);
+    } catch (RuntimeException e) {
+      LOG.error("Could not count printed labels", e);
+      return labelCounts;
+    }
+    Map<LabelCountKey, Integer> failed = new HashMap<>();
+    for (Map.Entry<LabelCountKey, Integer> entry : entries) {
+      try {
+        if (runLabelCountUnit("addLabelCountEntries",
+            conn -> addLabelCount(conn, entry.getKey(), entry.getValue())) == 0) {
+          warnLabelCountNotStored(entry);
+        }
+      } catch (SQLException e) {
+        if (isRejectedValue(e)) {
+          LOG.error("Dropping printed label count " + entry.getKey() + " of " + entry.getValue()
+              + " labels, the database rejected it.", e);
+        } else {
+          LOG.error("Could not count printed labels", e);
+          failed.put(entry.getKey(), entry.getValue());
+        }
+      } catch (RuntimeException e) {
+        LOG.error("Could not count printed labels", e);
+        failed.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return failed;
   }
 
-  private String getPrinterIDQuery(String name, String location) {
-
-    StringBuilder sb =
-        new StringBuilder("SELECT labelprinter.id FROM labelprinter WHERE labelprinter.name = '");
-    sb.append(name);
-    sb.append("' AND labelprinter.location = '");
-    sb.append(location);
-    sb.append("'");
-
-    return sb.toString();
+  private int[] addLabelCountBatch(Connection conn, List<Map.Entry<LabelCountKey, Integer>> entries)
+      throws SQLException {
+    if (!hasLabelCountKey(conn)) {
+      int[] res = new int[entries.size()];
+      for (int i = 0; i < res.length; i++) {
+        res[i] = addLabelCount(conn, entries.get(i).getKey(), entries.get(i).getValue());
+      }
+      return res;
+    }
+    try (PreparedStatement statement = conn.prepareStatement(LABEL_COUNT_UPSERT)) {
+      for (Map.Entry<LabelCountKey, Integer> entry : entries) {
+        LabelCountKey key = entry.getKey();
+        statement.setString(1, key.getUserName());
+        statement.setInt(2, entry.getValue());
+        statement.setString(3, key.getPrinterName());
+        statement.setString(4, key.getPrinterLocation());
+        statement.setString(5, key.getProjectIdentifier());
+        statement.setInt(6, entry.getValue());
+        statement.addBatch();
+      }
+      // drivers may report Statement.SUCCESS_NO_INFO instead of row counts, those count as stored
+      return statement.executeBatch();
+    }
   }
 
-  private String getProjektIDQuery(String space, String subProject) {
-    StringBuilder sb = new StringBuilder(
-        "SELECT projects.id FROM projects WHERE projects.openbis_project_identifier = '/");
-    sb.append(space);
-    sb.append("/");
-    sb.append(subProject);
-    sb.append("'");
+  private static void warnLabelCountNotStored(Map.Entry<LabelCountKey, Integer> entry) {
+    LOG.warn("Printer or project of {} not found, {} printed labels were not counted.",
+        entry.getKey(), entry.getValue());
+  }
 
-    return sb.toString();
+  /**
+   * @return true if the database rejected the values of a statement (SQL state class 22, data
+   *         exception, or 23, integrity constraint violation), so it fails again if it is retried
+   */
+  private static boolean isRejectedValue(SQLException e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof SQLException) {
+        String state = ((SQLException) t).getSQLState();
+        if (state != null) {
+          return state.startsWith("22") || state.startsWith("23");
+        }
+      }
+    }
+    return false;
   }
 
-  private void executeFreeQuery(String query) {
-    Connection conn = null;
+  /**
+   * Checks whether printed_label_counts has its unique key, see
+   * {@link #hasLabelCountKey(Connection)}. Called on startup, so a missing key is reported before
+   * the first labels are printed.
+   *
+   * @return true if the key exists, false if it is missing or the check failed
+   */
+  public boolean checkLabelCountKey() {
     try {
+      return runInUnitOfWork("checkLabelCountKey", this::hasLabelCountKey);
+    } catch (SQLException e) {
+      LOG.error("Could not check the unique key of printed_label_counts", e);
+    }
+    return false;
+  }
 
-      conn = login();
-      Statement statement = conn.createStatement();
+  /**
+   * Runs a unit of work writing label counts. Without the unique key of printed_label_counts the
+   * counts are updated or inserted in two statements, so these units are run one at a time and
+   * two prints of the same count can not both insert it. This only covers this application, the
+   * key should be added for good.
+   */
+  private <T> T runLabelCountUnit(String operation, UnitOfWork<T> work) throws SQLException {
+    if (labelCountKey == null) {
+      runInUnitOfWork("checkLabelCountKey", this::hasLabelCountKey);
+    }
+    if (labelCountKey) {
+      return runInUnitOfWork(operation, work);
+    }
+    synchronized (LABEL_COUNT_FALLBACK_LOCK) {
+      return runInUnitOfWork(operation, work);
+    }
+  }
 
-      statement.executeUpdate(query);
-      statement.close();
-      conn.setAutoCommit(true);
-      conn.commit();
-    } catch (SQLException ignored) {
+  /**
+   * Adds printed labels to one count, with the upsert if printed_label_counts has its unique key.
+   * Otherwise the count is incremented and only inserted if there was none yet, which is only
+   * safe in a unit of work run by {@link #runLabelCountUnit(String, UnitOfWork)}.
+   *
+   * @return the number of rows changed, 0 if the printer or project is unknown
+   */
+  private int addLabelCount(Connection conn, LabelCountKey key, int numLabels)
+      throws SQLException {
+    boolean upsert = hasLabelCountKey(conn);
+    if (!upsert) {
+      try (PreparedStatement statement = conn.prepareStatement(LABEL_COUNT_UPDATE)) {
+        statement.setInt(1, numLabels);
+        statement.setString(2, key.getUserName());
+        statement.setString(3, key.getPrinterName());
+        statement.setString(4, key.getPrinterLocation());
+        statement.setString(5, key.getProjectIdentifier());
+        int updated = statement.executeUpdate();
+        if (updated > 0) {
+          return updated;
+        }
+      }
+    }
+    try (PreparedStatement statement =
+        conn.prepareStatement(upsert ? LABEL_COUNT_UPSERT : LABEL_COUNT_INSERT)) {
+      statement.setString(1, key.getUserName());
+      statement.setInt(2, numLabels);
+      statement.setString(3, key.getPrinterName());
+      statement.setString(4, key.getPrinterLocation());
+      statement.setString(5, key.getProjectIdentifier());
+      if (upsert) {
+        statement.setInt(6, numLabels);
+      }
+      return statement.executeUpdate();
+    }
+  }
 
-    } finally {
-      logout(conn);
+  /**
+   * The label count upsert needs the unique key over (printer_id, project_id, user_name) of
+   * printed_label_counts, added by sql/printed_label_counts_key.sql. Without it ON DUPLICATE KEY
+   * never fires and every print would insert another row, so the key is looked up once in the
+   * database metadata.
+   */
+  private boolean hasLabelCountKey(Connection conn) throws SQLException {
+    Boolean res = labelCountKey;
+    if (res == null) {
+      DatabaseMetaData meta = conn.getMetaData();
+      // unquoted identifiers are stored in upper case by some databases
+      res = hasUniqueKey(meta, conn.getCatalog(), "printed_label_counts", LABEL_COUNT_KEY)
+          || hasUniqueKey(meta, conn.getCatalog(), "PRINTED_LABEL_COUNTS", LABEL_COUNT_KEY);
+      if (!res) {
+        LOG.error("Table printed_label_counts has no unique key over (printer_id, project_id, "
+            + "user_name), please add it with sql/printed_label_counts_key.sql. Until then label "
+            + "counts are written one at a time, and counts written by other applications may "
+            + "be duplicated.");
+      }
+      labelCountKey = res;
+    }
+    return res;
+  }
+
+  private static boolean hasUniqueKey(DatabaseMetaData meta, String catalog, String table,
+      Set<String> columns) throws SQLException {
+    Map<String, Set<String>> columnsByIndex = new HashMap<>();
+    try (ResultSet rs = meta.getIndexInfo(catalog, null, table, true, false)) {
+      while (rs.next()) {
+        String index = rs.getString("INDEX_NAME");
+        String column = rs.getString("COLUMN_NAME");
+        if (index != null && column != null) {
+          columnsByIndex.computeIfAbsent(index, i -> new HashSet<>()).add(column.toLowerCase());
+        }
+      }
     }
+    return columnsByIndex.containsValue(columns);
+  }
+
+  public SQLContainer loadTableFromQuery(String query) throws SQLException {
+    FreeformQuery freeformQuery = new FreeformQuery(query, connectionPool);
+    return new SQLContainer(freeformQuery);
   }
 
 }
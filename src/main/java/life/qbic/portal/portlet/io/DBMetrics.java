@@ -0,0 +1,39 @@
+package life.qbic.portal.portlet.io;
+
+/**
+ * Receives timings of the database operations done by {@link DBManager}. Implementations must be
+ * thread-safe, they are called from every session.
+ */
+public interface DBMetrics {
+
+  /**
+   * Metrics that discard everything
+   */
+  DBMetrics NONE = new DBMetrics() {
+
+    @Override
+    public void recordOperation(String operation, long nanos, int rows, boolean failed) {}
+
+    @Override
+    public void recordPoolAcquire(long nanos, boolean failed) {}
+  };
+
+  /**
+   * Records one call of a public DBManager operation
+   *
+   * @param operation name of the operation, e.g. getPersonsForProject
+   * @param nanos time from reserving the connection until it was released
+   * @param rows number of entries returned: size of a returned collection, map or array, 0 for no
+   *        result or a number or boolean and 1 for any other object
+   * @param failed true if the operation threw an exception
+   */
+  void recordOperation(String operation, long nanos, int rows, boolean failed);
+
+  /**
+   * Records one attempt to reserve a connection from the pool
+   *
+   * @param nanos time spent waiting for the connection
+   * @param failed true if no connection could be reserved
+   */
+  void recordPoolAcquire(long nanos, boolean failed);
+}
@@ -0,0 +1,27 @@
+package life.qbic.portal.portlet.io;
+
+/**
+ * JMX view of the statistics of one database operation, see {@link JmxDBMetrics}
+ */
+public interface DBOperationStatsMXBean {
+
+  long getCalls();
+
+  long getErrors();
+
+  long getRows();
+
+  double getMeanLatencyMillis();
+
+  double getMaxLatencyMillis();
+
+  /**
+   * @return upper bounds of the latency histogram buckets in milliseconds; the last bucket of
+   *         {@link #getLatencyHistogram()} counts everything above the last bound
+   */
+  long[] getLatencyBucketBoundsMillis();
+
+  long[] getLatencyHistogram();
+
+  void reset();
+}
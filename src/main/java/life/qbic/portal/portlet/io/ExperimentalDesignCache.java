@@ -0,0 +1,88 @@
+package life.qbic.portal.portlet.io;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import life.qbic.portal.portlet.model.ProjectDesign;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Application-wide cache of parsed experimental designs. Parsing the design XML of large factorial
+ * designs is expensive, so each design is only parsed once per modification of the experiment
+ * storing it, independent of whether the snapshot of its project is still cached.
+ *
+ * There is one cache per application, see {@link #start()}.
+ */
+public class ExperimentalDesignCache {
+
+  private static final Logger LOG = LogManager.getLogger(ExperimentalDesignCache.class);
+  private static final int MAX_DESIGNS = 200;
+
+  private static ExperimentalDesignCache instance;
+
+  private final int maxDesigns;
+  // access order, the eldest entry is the least recently used one
+  private final LinkedHashMap<String, CachedDesign> designs;
+
+  ExperimentalDesignCache(int maxDesigns) {
+    this.maxDesigns = maxDesigns;
+    this.designs = new LinkedHashMap<String, CachedDesign>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedDesign> eldest) {
+        return size() > ExperimentalDesignCache.this.maxDesigns;
+      }
+    };
+  }
+
+  public static synchronized ExperimentalDesignCache start() {
+    if (instance == null) {
+      instance = new ExperimentalDesignCache(MAX_DESIGNS);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the design stored in an experiment, parsing it only if it was not parsed for this
+   * modification of the experiment before
+   *
+   * @param experimentID identifier of the experiment storing the design
+   * @param modificationTime modification time of the experiment
+   * @param parser parses the design of the experiment
+   * @return the parsed design
+   */
+  public ProjectDesign get(String experimentID, long modificationTime,
+      Supplier<ProjectDesign> parser) {
+    synchronized (this) {
+      CachedDesign cached = designs.get(experimentID);
+      if (cached != null && cached.modificationTime == modificationTime) {
+        return cached.design;
+      }
+    }
+    // parsed outside of the lock, a design parsed by two sessions at once is parsed twice
+    ProjectDesign design = parser.get();
+    synchronized (this) {
+      CachedDesign cached = designs.get(experimentID);
+      if (cached == null || cached.modificationTime < modificationTime) {
+        designs.put(experimentID, new CachedDesign(modificationTime, design));
+        LOG.debug("Cached experimental design of {}.", experimentID);
+      }
+    }
+    return design;
+  }
+
+  synchronized int size() {
+    return designs.size();
+  }
+
+  private static class CachedDesign {
+
+    private final long modificationTime;
+    private final ProjectDesign design;
+
+    CachedDesign(long modificationTime, ProjectDesign design) {
+      this.modificationTime = modificationTime;
+      this.design = design;
+    }
+  }
+}
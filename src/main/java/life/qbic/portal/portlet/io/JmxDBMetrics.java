@@ -0,0 +1,201 @@
+package life.qbic.portal.portlet.io;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps call count, errors, returned rows and a latency histogram per database operation and per
+ * pool acquire. Every operation is registered as MBean
+ * {@code life.qbic.portal.portlet:type=DBManager,operation=<name>} on the platform MBean server
+ * the first time it is called; pool acquires are reported as operation {@code poolAcquire}.
+ *
+ * There is one instance per application, see {@link #start()}.
+ */
+public class JmxDBMetrics implements DBMetrics {
+
+  private static final Logger LOG = LogManager.getLogger(JmxDBMetrics.class);
+  static final String DOMAIN = "life.qbic.portal.portlet";
+  static final String POOL_ACQUIRE = "poolAcquire";
+  private static final long[] BUCKET_BOUNDS_MILLIS =
+      {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+  private static JmxDBMetrics instance;
+
+  private final MBeanServer server;
+  private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+  JmxDBMetrics(MBeanServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Starts the metrics of this application, if they were not started before
+   *
+   * @return the metrics of this application
+   */
+  public static synchronized JmxDBMetrics start() {
+    if (instance == null) {
+      instance = new JmxDBMetrics(ManagementFactory.getPlatformMBeanServer());
+    }
+    return instance;
+  }
+
+  /**
+   * Unregisters all MBeans, so a redeployed application does not collide with them
+   */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.unregisterAll();
+      instance = null;
+    }
+  }
+
+  @Override
+  public void recordOperation(String operation, long nanos, int rows, boolean failed) {
+    statsFor(operation).record(nanos, rows, failed);
+  }
+
+  @Override
+  public void recordPoolAcquire(long nanos, boolean failed) {
+    statsFor(POOL_ACQUIRE).record(nanos, 0, failed);
+  }
+
+  /**
+   * @return statistics of an operation, null if it was never called
+   */
+  DBOperationStatsMXBean getStats(String operation) {
+    return operations.get(operation);
+  }
+
+  private OperationStats statsFor(String operation) {
+    OperationStats stats = operations.get(operation);
+    if (stats == null) {
+      stats = operations.computeIfAbsent(operation, this::register);
+    }
+    return stats;
+  }
+
+  private OperationStats register(String operation) {
+    OperationStats stats = new OperationStats();
+    try {
+      ObjectName name = objectName(operation);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(stats, name);
+    } catch (JMException e) {
+      LOG.warn("Could not register metrics of database operation " + operation, e);
+    }
+    return stats;
+  }
+
+  private void unregisterAll() {
+    for (String operation : operations.keySet()) {
+      try {
+        ObjectName name = objectName(operation);
+        if (server.isRegistered(name)) {
+          server.unregisterMBean(name);
+        }
+      } catch (JMException e) {
+        LOG.warn("Could not unregister metrics of database operation " + operation, e);
+      }
+    }
+    operations.clear();
+  }
+
+  static ObjectName objectName(String operation) throws JMException {
+    return new ObjectName(DOMAIN + ":type=DBManager,operation=" + ObjectName.quote(operation));
+  }
+
+  private static class OperationStats implements DBOperationStatsMXBean {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+    void record(long nanos, int numRows, boolean failed) {
+      calls.increment();
+      if (failed) {
+        errors.increment();
+      }
+      rows.add(numRows);
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+      histogram.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMillis(nanos)));
+    }
+
+    private static int bucketOf(long millis) {
+      for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+        if (millis <= BUCKET_BOUNDS_MILLIS[i]) {
+          return i;
+        }
+      }
+      return BUCKET_BOUNDS_MILLIS.length;
+    }
+
+    @Override
+    public long getCalls() {
+      return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+      return rows.sum();
+    }
+
+    @Override
+    public double getMeanLatencyMillis() {
+      long n = calls.sum();
+      return n == 0 ? 0 : totalNanos.sum() / (n * 1e6);
+    }
+
+    @Override
+    public double getMaxLatencyMillis() {
+      return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public long[] getLatencyBucketBoundsMillis() {
+      return BUCKET_BOUNDS_MILLIS.clone();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+      long[] res = new long[histogram.length()];
+      for (int i = 0; i < res.length; i++) {
+        res[i] = histogram.get(i);
+      }
+      return res;
+    }
+
+    @Override
+    public void reset() {
+      calls.reset();
+      errors.reset();
+      rows.reset();
+      totalNanos.reset();
+      maxNanos.reset();
+      for (int i = 0; i < histogram.length(); i++) {
+        histogram.set(i, 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package life.qbic.portal.portlet.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import life.qbic.portal.portlet.model.LabelCountKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Write-behind buffer for printed label counts. Print threads only record their counts here and
+ * return immediately. Counts are coalesced per printer, project and user and written to the
+ * database in one batch on a fixed interval.
+ *
+ * Every recorded count is appended to a journal file before it is acknowledged. The journal is
+ * compacted after each successful flush and replayed on start, so counts that could not be stored
+ * before a shutdown or database outage are not lost.
+ *
+ * There is one buffer per application, see {@link #start(DBManager, File)}.
+ */
+public class LabelCountBuffer {
+
+  private static final Logger LOG = LogManager.getLogger(LabelCountBuffer.class);
+  private static final long FLUSH_INTERVAL_SECONDS = 30;
+  private static final String SEPARATOR = "\t";
+  // URL encoding never produces a backslash, so this can not be confused with a value
+  private static final String NULL_FIELD = "\\N";
+
+  private static LabelCountBuffer instance;
+
+  private final DBManager dbManager;
+  private final File journal;
+  private final Object lock = new Object();
+  private final ScheduledExecutorService scheduler;
+  private Map<LabelCountKey, Integer> pending = new HashMap<>();
+
+  private LabelCountBuffer(DBManager dbManager, File journal) {
+    this.dbManager = dbManager;
+    this.journal = journal;
+    // reports a missing unique key of the count table on startup
+    dbManager.checkLabelCountKey();
+    replayJournal();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "label-count-flush");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS,
+        FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Starts the buffer of this application, if it was not started before
+   *
+   * @param dbManager used to write the counts
+   * @param journal file counts are journaled to until they are stored in the database
+   * @return the buffer of this application
+   */
+  public static synchronized LabelCountBuffer start(DBManager dbManager, File journal) {
+    if (instance == null) {
+      instance = new LabelCountBuffer(dbManager, journal);
+    }
+    return instance;
+  }
+
+  /**
+   * Writes all pending counts and stops the buffer. Counts that can not be written stay in the
+   * journal and are replayed by the next start.
+   */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.scheduler.shutdown();
+      try {
+        instance.scheduler.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      instance.flush();
+      instance = null;
+    }
+  }
+
+  /**
+   * Records labels that were printed. The count is journaled and stored in the database with the
+   * next flush.
+   */
+  public void add(String printerName, String printerLocation, String projectSpace,
+      String userName, String subProject, int numLabels) {
+    LabelCountKey key =
+        new LabelCountKey(printerName, printerLocation, projectSpace, subProject, userName);
+    synchronized (lock) {
+      try {
+        appendToJournal(key, numLabels);
+      } catch (IOException e) {
+        LOG.error("Could not journal printed label count " + key, e);
+      }
+      pending.merge(key, numLabels, Integer::sum);
+    }
+  }
+
+  /**
+   * Writes all pending counts to the database in one batch. Counts that could not be stored for
+   * now are kept for the next flush, counts the database rejected are dropped, see
+   * {@link DBManager#addLabelCountEntries(Map)}.
+   */
+  public void flush() {
+    Map<LabelCountKey, Integer> batch;
+    synchronized (lock) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending;
+      pending = new HashMap<>();
+    }
+    Map<LabelCountKey, Integer> failed = dbManager.addLabelCountEntries(batch);
+    synchronized (lock) {
+      for (Map.Entry<LabelCountKey, Integer> entry : failed.entrySet()) {
+        pending.merge(entry.getKey(), entry.getValue(), Integer::sum);
+      }
+      if (failed.isEmpty()) {
+        LOG.info("Logged {} printed label counts to Table printed_label_counts.", batch.size());
+      } else {
+        LOG.warn("{} of {} printed label counts could not be logged, retrying with the next flush.",
+            failed.size(), batch.size());
+      }
+      // nothing to compact if all counts are still pending
+      if (failed.size() < batch.size()) {
+        try {
+          rewriteJournal();
+        } catch (IOException e) {
+          LOG.error("Could not compact label count journal " + journal, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return copy of the counts that were not written yet
+   */
+  Map<LabelCountKey, Integer> getPending() {
+    synchronized (lock) {
+      return new HashMap<>(pending);
+    }
+  }
+
+  private void appendToJournal(LabelCountKey key, int numLabels) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(journal, true)) {
+      out.write(toJournalLine(key, numLabels).getBytes(StandardCharsets.UTF_8));
+      out.getFD().sync();
+    }
+  }
+
+  // the journal only has to contain what was not stored yet
+  private void rewriteJournal() throws IOException {
+    File tmp = new File(journal.getPath() + ".tmp");
+    try (FileOutputStream out = new FileOutputStream(tmp);
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+      for (Map.Entry<LabelCountKey, Integer> entry : pending.entrySet()) {
+        writer.write(toJournalLine(entry.getKey(), entry.getValue()));
+      }
+      writer.flush();
+      out.getFD().sync();
+    }
+    Files.move(tmp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void replayJournal() {
+    if (!journal.isFile()) {
+      return;
+    }
+    try (BufferedReader reader =
+        Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length != 6) {
+          LOG.warn("Skipping malformed line in label count journal: {}", line);
+          continue;
+        }
+        LabelCountKey key = new LabelCountKey(decode(fields[0]), decode(fields[1]),
+            decode(fields[2]), decode(fields[3]), decode(fields[4]));
+        pending.merge(key, Integer.parseInt(fields[5]), Integer::sum);
+      }
+      LOG.info("Replayed {} printed label counts from journal {}", pending.size(), journal);
+    } catch (IOException | NumberFormatException e) {
+      LOG.error("Could not replay label count journal " + journal, e);
+    }
+  }
+
+  private String toJournalLine(LabelCountKey key, int numLabels)
+      throws UnsupportedEncodingException {
+    return encode(key.getPrinterName()) + SEPARATOR + encode(key.getPrinterLocation())
+        + SEPARATOR + encode(key.getProjectSpace()) + SEPARATOR + encode(key.getSubProject())
+        + SEPARATOR + encode(key.getUserName()) + SEPARATOR + numLabels + "\n";
+  }
+
+  private String encode(String field) throws UnsupportedEncodingException {
+    return field == null ? NULL_FIELD : URLEncoder.encode(field, "UTF-8");
+  }
+
+  private String decode(String field) throws UnsupportedEncodingException {
+    return field.equals(NULL_FIELD) ? null : URLDecoder.decode(field, "UTF-8");
+  }
+}
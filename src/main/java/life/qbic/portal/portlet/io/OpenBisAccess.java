@@ -0,0 +1,266 @@
+package life.qbic.portal.portlet.io;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import ch.systemsx.cisd.common.exceptions.InvalidSessionException;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.IGeneralInformationService;
+import life.qbic.openbis.openbisclient.IOpenBisClient;
+import life.qbic.openbis.openbisclient.OpenBisClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Application-wide access to openBIS. All UIs share one authenticated client instead of logging in
+ * for every page load. The session is renewed on a fixed interval, well before openBIS expires it,
+ * and once more if a read call fails because the session became invalid anyway. Only the read calls
+ * in {@link #READ_CALLS} are repeated after that, others could have been executed already. The
+ * general information service handed out by the client is limited the same way, its read calls
+ * in {@link #SERVICE_READ_CALLS} are repeated with the token of the renewed session. A
+ * renewed session replaces the old one, which is logged out once the calls still using it are
+ * done. The number of calls running against openBIS at the same time is limited, further callers
+ * wait for a free slot.
+ *
+ * There is one instance per application, see {@link #start(String, String, String)}.
+ */
+public class OpenBisAccess {
+
+  private static final Logger LOG = LogManager.getLogger(OpenBisAccess.class);
+  private static final long RELOGIN_INTERVAL_MINUTES = 20;
+  private static final int MAX_CONCURRENT_CALLS = 10;
+  /**
+   * Client methods that only read from openBIS and can safely be called again
+   */
+  private static final Set<String> READ_CALLS = Collections.unmodifiableSet(new HashSet<>(
+      Arrays.asList("getUserSpaces", "isUserAdmin", "getProjectsOfSpace",
+          "getExperimentsForProject", "getSamplesWithParentsAndChildrenOfProjectBySearchService",
+          "getVocabCodesAndLabelsForVocab", "getAggregationService")));
+  /**
+   * Methods of the general information service that only read from openBIS
+   */
+  private static final Set<String> SERVICE_READ_CALLS =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList("searchForSamples")));
+
+  private static OpenBisAccess instance;
+
+  private final IOpenBisClient client;
+  private final IOpenBisClient limitedClient;
+  private final Semaphore permits = new Semaphore(MAX_CONCURRENT_CALLS, true);
+  private final Object loginLock = new Object();
+  // the session new calls are made with, guarded by loginLock
+  private Session session;
+  private final ScheduledExecutorService scheduler;
+
+  OpenBisAccess(IOpenBisClient client) {
+    this.client = client;
+    client.login();
+    this.session = new Session(client.getSessionToken());
+    this.limitedClient = (IOpenBisClient) Proxy.newProxyInstance(
+        IOpenBisClient.class.getClassLoader(), new Class<?>[] {IOpenBisClient.class},
+        new LimitingHandler(client, READ_CALLS));
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "openbis-relogin");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.scheduleWithFixedDelay(this::relogin, RELOGIN_INTERVAL_MINUTES,
+        RELOGIN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Logs in to openBIS, if this was not done before by another UI
+   *
+   * @param user openBIS user of the portlet
+   * @param password password of that user
+   * @param url openBIS API url
+   * @return the openBIS access of this application
+   */
+  public static synchronized OpenBisAccess start(String user, String password, String url) {
+    if (instance == null) {
+      instance = new OpenBisAccess(new OpenBisClient(user, password, url));
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.scheduler.shutdownNow();
+      instance = null;
+    }
+  }
+
+  /**
+   * @return the shared client; calls through it wait if too many calls are running already
+   */
+  public IOpenBisClient getClient() {
+    return limitedClient;
+  }
+
+  /**
+   * Logs in again and replaces the current session. The replaced session is logged out right away
+   * if no call is using it, otherwise by the last call that does.
+   */
+  private void relogin() {
+    Session replaced;
+    synchronized (loginLock) {
+      try {
+        client.login();
+      } catch (RuntimeException e) {
+        LOG.error("Could not renew openBIS session", e);
+        return;
+      }
+      replaced = session;
+      session = new Session(client.getSessionToken());
+      replaced.replaced = true;
+      LOG.debug("Renewed openBIS session.");
+      if (replaced.calls > 0) {
+        return;
+      }
+    }
+    logout(replaced);
+  }
+
+  /**
+   * Logs in again, unless another thread did so since the failed call was started
+   *
+   * @param failed session the failed call was started with
+   */
+  private void relogin(Session failed) {
+    synchronized (loginLock) {
+      if (session == failed) {
+        LOG.warn("openBIS session expired, logging in again.");
+        relogin();
+      }
+    }
+  }
+
+  private Session startCall() {
+    synchronized (loginLock) {
+      session.calls++;
+      return session;
+    }
+  }
+
+  private void endCall(Session used) {
+    synchronized (loginLock) {
+      used.calls--;
+      if (!used.replaced || used.calls > 0) {
+        return;
+      }
+    }
+    logout(used);
+  }
+
+  private void logout(Session replaced) {
+    try {
+      client.getOpenbisInfoService().logout(replaced.token);
+      LOG.debug("Logged out replaced openBIS session.");
+    } catch (RuntimeException e) {
+      // e.g. if it expired already
+      LOG.warn("Could not log out replaced openBIS session", e);
+    }
+  }
+
+  private static boolean isSessionError(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof InvalidSessionException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * An openBIS session and the number of calls currently made with it, guarded by loginLock
+   */
+  private static class Session {
+
+    private final String token;
+    private int calls;
+    private boolean replaced;
+
+    Session(String token) {
+      this.token = token;
+    }
+  }
+
+  /**
+   * Replaces the token of a replaced session in the arguments of a call that is repeated
+   */
+  private static Object[] withToken(Object[] args, String replaced, String renewed) {
+    if (args == null) {
+      return null;
+    }
+    Object[] res = args.clone();
+    for (int i = 0; i < res.length; i++) {
+      if (replaced != null && replaced.equals(res[i])) {
+        res[i] = renewed;
+      }
+    }
+    return res;
+  }
+
+  private class LimitingHandler implements InvocationHandler {
+
+    private final Object target;
+    private final Set<String> readCalls;
+
+    LimitingHandler(Object target, Set<String> readCalls) {
+      this.target = target;
+      this.readCalls = readCalls;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        return method.invoke(target, args);
+      }
+      permits.acquire();
+      try {
+        Session used = startCall();
+        try {
+          return limit(method.invoke(target, args));
+        } catch (InvocationTargetException e) {
+          if (!isSessionError(e.getCause())) {
+            throw e.getCause();
+          }
+          relogin(used);
+          if (!readCalls.contains(method.getName())) {
+            throw e.getCause();
+          }
+        } finally {
+          endCall(used);
+        }
+        Session renewed = startCall();
+        try {
+          return limit(method.invoke(target, withToken(args, used.token, renewed.token)));
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        } finally {
+          endCall(renewed);
+        }
+      } finally {
+        permits.release();
+      }
+    }
+
+    // calls of the service handed out by the client are limited as well
+    private Object limit(Object result) {
+      if (target != client || !(result instanceof IGeneralInformationService)) {
+        return result;
+      }
+      return Proxy.newProxyInstance(IGeneralInformationService.class.getClassLoader(),
+          new Class<?>[] {IGeneralInformationService.class},
+          new LimitingHandler(result, SERVICE_READ_CALLS));
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package life.qbic.portal.portlet.io;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.liferay.portal.model.UserGroup;
+import life.qbic.datamodel.printing.Printer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * In-memory registry of the label printers, loaded from the database once and refreshed on a
+ * fixed interval. Printers are indexed by their lower-cased user group and by the codes of the
+ * projects they are associated with, so resolving the printers of a user and project does not
+ * need a database round-trip.
+ *
+ * There is one registry per application, see {@link #start(DBManager)}.
+ */
+public class PrinterRegistry {
+
+  private static final Logger LOG = LogManager.getLogger(PrinterRegistry.class);
+  private static final long REFRESH_INTERVAL_MINUTES = 10;
+  // used if printers could never be loaded from the database
+  private static final Printer FALLBACK_PRINTER = new Printer("QBiC LAB", "TSC_TTP-343C",
+      "printserv.qbic.uni-tuebingen.de", Printer.PrinterType.Label_Printer, true, "");
+
+  private static PrinterRegistry instance;
+
+  private final DBManager dbManager;
+  private final ScheduledExecutorService scheduler;
+  private volatile Index index;
+
+  private PrinterRegistry(DBManager dbManager) {
+    this.dbManager = dbManager;
+    refresh();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "printer-registry-refresh");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_MINUTES,
+        REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Starts the registry of this application, if it was not started before, and loads the printers
+   *
+   * @param dbManager used to load the printers
+   * @return the registry of this application
+   */
+  public static synchronized PrinterRegistry start(DBManager dbManager) {
+    if (instance == null) {
+      instance = new PrinterRegistry(dbManager);
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.scheduler.shutdownNow();
+      instance = null;
+    }
+  }
+
+  /**
+   * Reloads all printers from the database. If that fails, the printers loaded before are kept.
+   */
+  public void refresh() {
+    List<Entry> printers = dbManager.getPrintersWithProjects();
+    if (printers != null) {
+      index = new Index(printers);
+      LOG.debug("Loaded {} printers.", printers.size());
+    } else {
+      LOG.warn("Could not refresh printers, keeping the ones loaded before.");
+    }
+  }
+
+  /**
+   * Returns the printers a user can use for a project: printers associated with the project,
+   * printers of the user's groups and printers for admins
+   *
+   * @param project code of the project
+   * @param liferayUserGroupList user groups of the current user
+   * @return set of available printers
+   */
+  public Set<Printer> getPrintersForProject(String project, List<UserGroup> liferayUserGroupList) {
+    Set<Printer> res = new HashSet<>();
+    Index current = index;
+    if (current == null) {
+      res.add(FALLBACK_PRINTER);
+      return res;
+    }
+    res.addAll(current.adminPrinters);
+    res.addAll(current.byProject.getOrDefault(project, Collections.emptySet()));
+    for (UserGroup ug : liferayUserGroupList) {
+      res.addAll(
+          current.byUserGroup.getOrDefault(ug.getName().toLowerCase(), Collections.emptySet()));
+    }
+    LOG.debug("Found {}  printers for this user and project.", res.size());
+    return res;
+  }
+
+  /**
+   * A printer as stored in the database, with its user group and the identifiers of the projects
+   * it is associated with
+   */
+  public static class Entry {
+
+    private final Printer printer;
+    private final String userGroup;
+    private final Set<String> projectIdentifiers = new HashSet<>();
+
+    public Entry(Printer printer, String userGroup) {
+      this.printer = printer;
+      this.userGroup = userGroup;
+    }
+
+    public void addProject(String projectIdentifier) {
+      projectIdentifiers.add(projectIdentifier);
+    }
+  }
+
+  /**
+   * Immutable lookup tables of one loaded set of printers
+   */
+  private static class Index {
+
+    private final Set<Printer> adminPrinters = new HashSet<>();
+    private final Map<String, Set<Printer>> byUserGroup = new HashMap<>();
+    private final Map<String, Set<Printer>> byProject = new HashMap<>();
+
+    Index(List<Entry> printers) {
+      for (Entry entry : printers) {
+        Printer printer = entry.printer;
+        // QBiC printers for admin users
+        if (printer.isAdminPrinter()) {
+          adminPrinters.add(printer);
+        } else {
+          for (String projectIdentifier : entry.projectIdentifiers) {
+            String[] split = projectIdentifier.split("/");
+            byProject.computeIfAbsent(split[split.length - 1], p -> new HashSet<>()).add(printer);
+          }
+        }
+        if (entry.userGroup != null) {
+          byUserGroup.computeIfAbsent(entry.userGroup.toLowerCase(), g -> new HashSet<>())
+              .add(printer);
+        }
+      }
+    }
+  }
+}
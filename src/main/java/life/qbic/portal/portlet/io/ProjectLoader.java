@@ -0,0 +1,586 @@
+package life.qbic.portal.portlet.io;
+
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.EntityRegistrationDetails;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Experiment;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SampleFetchOption;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SearchCriteria;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SearchCriteria.MatchClause;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SearchCriteria.MatchClauseAttribute;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SearchSubCriteria;
+import ch.systemsx.cisd.openbis.plugin.query.shared.api.v1.dto.QueryTableModel;
+import life.qbic.datamodel.identifiers.ExperimentCodeFunctions;
+import life.qbic.datamodel.samples.SampleType;
+import life.qbic.openbis.openbisclient.IOpenBisClient;
+import life.qbic.portal.portlet.model.BarcodeSample;
+import life.qbic.portal.portlet.model.ExperimentBarcodeSummary;
+import life.qbic.portal.portlet.model.ProjectDesign;
+import life.qbic.portal.portlet.model.ProjectSnapshot;
+import life.qbic.portal.portlet.model.PropertySymbolTable;
+import life.qbic.portal.portlet.util.Tuple;
+import life.qbic.xml.manager.StudyXMLParser;
+import life.qbic.xml.properties.Property;
+import life.qbic.xml.study.Qexperiment;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Loads the experiments, barcode sample summaries and experimental design of a project from
+ * openBIS. Loaded projects are kept in a {@link ProjectSnapshotCache} shared by all sessions.
+ * Before a cached snapshot is used, the experiments of the project are fetched and compared with
+ * the snapshot: openBIS updates the modification date of an experiment whenever samples are added
+ * to or changed in it, so a snapshot is only updated if an experiment changed. Other changes, e.g.
+ * of the properties of samples, are only noticed when the project is loaded completely, which
+ * happens once the last full load is older than an hour.
+ *
+ * Projects that are not cached are loaded with all their samples. If summaries are enabled, they
+ * are summarized by the aggregation service {@value #SUMMARY_SERVICE} instead, so the experiment
+ * table can be filled without loading all samples. The service is not part of this portlet and has
+ * to be deployed to openBIS before summaries are enabled, see the README. It is
+ * called with the parameter "project" (identifier of the project, e.g. /SPACE/QABCD) and has to
+ * return one row per experiment, registration day, sample type and Q_SAMPLE_TYPE with the columns
+ * <ol>
+ * <li>experiment identifier (String)</li>
+ * <li>registration day of the samples in the time zone of the portal server, formatted as
+ * yy-MM-dd (String)</li>
+ * <li>sample type code (String)</li>
+ * <li>value of the property Q_SAMPLE_TYPE, null if the samples have none (String)</li>
+ * <li>number of samples (Number, e.g. Long)</li>
+ * </ol>
+ * Rows have to be ordered by the earliest registration time of their samples. The experiment
+ * table shows one row per experiment and day, whose bio type is taken from the first of its rows,
+ * like it is taken from the first sample when all samples are loaded. If the service fails, all
+ * samples are loaded and the service is not called again for a while.
+ */
+public class ProjectLoader {
+
+  private static final Logger LOG = LogManager.getLogger(ProjectLoader.class);
+
+  private static final List<SampleType> BARCODE_SAMPLES =
+      Arrays.asList(SampleType.Q_BIOLOGICAL_ENTITY, SampleType.Q_BIOLOGICAL_SAMPLE,
+          SampleType.Q_TEST_SAMPLE, SampleType.Q_NGS_SINGLE_SAMPLE_RUN,
+          SampleType.Q_MHC_LIGAND_EXTRACT, SampleType.Q_MS_RUN,
+          SampleType.Q_BMI_GENERIC_IMAGING_RUN);
+
+  // changes that do not modify an experiment in openBIS are only noticed by a full load, so
+  // snapshots are neither used nor refreshed after this
+  private static final long MAX_FULL_LOAD_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  /**
+   * Aggregation service counting the samples of a project, see {@link ProjectLoader}
+   */
+  static final String SUMMARY_SERVICE = "barcode-sample-summary";
+  // a failing service, e.g. one that is not deployed, is not called by any session for a while
+  private static final long SUMMARY_SERVICE_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static volatile long summaryServiceRetryTime = 0;
+
+  private final IOpenBisClient openbis;
+  private final VocabularyCache vocabularies;
+  private final ProjectSnapshotCache snapshots;
+  private final ExperimentalDesignCache designs;
+  private final boolean useSummaryService;
+  private long maxFullLoadAgeMillis = MAX_FULL_LOAD_AGE_MILLIS;
+
+  public ProjectLoader(IOpenBisClient openbis, VocabularyCache vocabularies,
+      ProjectSnapshotCache snapshots, ExperimentalDesignCache designs) {
+    this(openbis, vocabularies, snapshots, designs, false);
+  }
+
+  /**
+   * @param useSummaryService true if projects that are not cached are summarized by the
+   *        aggregation service {@value #SUMMARY_SERVICE} instead of loading all their samples
+   */
+  public ProjectLoader(IOpenBisClient openbis, VocabularyCache vocabularies,
+      ProjectSnapshotCache snapshots, ExperimentalDesignCache designs,
+      boolean useSummaryService) {
+    this.openbis = openbis;
+    this.vocabularies = vocabularies;
+    this.snapshots = snapshots;
+    this.designs = designs;
+    this.useSummaryService = useSummaryService;
+  }
+
+  /**
+   * Returns the current state of a project. If nothing changed since it was loaded, the cached
+   * snapshot is returned. If experiments were added or modified, only the samples of those
+   * experiments are fetched again and merged into it. Everything is loaded again if experiments
+   * were removed or the last full load is too old, even if no experiment changed.
+   *
+   * @param space code of the space
+   * @param project code of the project
+   * @return snapshot of the project
+   */
+  public ProjectSnapshot load(String space, String project) {
+    String projectID = "/" + space + "/" + project;
+    Map<String, Experiment> experiments = new HashMap<>();
+    for (Experiment e : openbis.getExperimentsForProject(projectID)) {
+      experiments.put(e.getIdentifier(), e);
+    }
+    Map<String, Long> versions = getVersions(experiments);
+    ProjectSnapshot cached = snapshots.get(projectID);
+    if (cached != null && cached.isCurrent(versions) && isRecent(cached)) {
+      LOG.debug("Using cached snapshot of project {}.", projectID);
+      return cached;
+    }
+    ProjectSnapshot snapshot = null;
+    if (cached != null && canRefresh(cached, versions)) {
+      try {
+        snapshot = refresh(cached, space, project, experiments, versions);
+      } catch (RuntimeException e) {
+        LOG.warn("Could not refresh project " + projectID + ", loading it completely.", e);
+      }
+    }
+    if (snapshot == null && useSummaryService
+        && System.currentTimeMillis() >= summaryServiceRetryTime) {
+      try {
+        snapshot = loadSummary(space, project, experiments, versions);
+      } catch (RuntimeException e) {
+        summaryServiceRetryTime = System.currentTimeMillis() + SUMMARY_SERVICE_BACKOFF_MILLIS;
+        LOG.warn("Aggregation service " + SUMMARY_SERVICE + " failed, loading all samples of "
+            + "projects for the next " + TimeUnit.MILLISECONDS.toMinutes(
+                SUMMARY_SERVICE_BACKOFF_MILLIS) + " minutes.", e);
+      }
+    }
+    if (snapshot == null) {
+      snapshot = loadCompletely(space, project, experiments, versions);
+    }
+    snapshots.put(snapshot);
+    return snapshot;
+  }
+
+  /**
+   * Calls the summary service with the next load again, even if it failed recently
+   */
+  static void resetSummaryService() {
+    summaryServiceRetryTime = 0;
+  }
+
+  /**
+   * @param millis time after which cached snapshots are loaded completely again
+   */
+  void setMaxFullLoadAge(long millis) {
+    maxFullLoadAgeMillis = millis;
+  }
+
+  private ProjectSnapshot loadCompletely(String space, String project,
+      Map<String, Experiment> experiments, Map<String, Long> versions) {
+    String projectID = "/" + space + "/" + project;
+    long loadTime = System.currentTimeMillis();
+    // the design is parsed while the samples are fetched
+    CompletableFuture<ProjectDesign> design = parseDesignAsync(
+        experiments.get(ExperimentCodeFunctions.getInfoExperimentID(space, project)));
+    Map<Tuple, SampleGroup> groups = new LinkedHashMap<>();
+    Map<String, String> sampleCodeToSpecies = new HashMap<>();
+    PropertySymbolTable symbols = new PropertySymbolTable();
+    for (Sample s : openbis.getSamplesWithParentsAndChildrenOfProjectBySearchService(projectID)) {
+      addSample(BarcodeSample.fromSample(s, symbols), experiments, groups, sampleCodeToSpecies);
+    }
+    return new ProjectSnapshot(projectID, versions, experiments, toSummaries(groups),
+        design.join(), sampleCodeToSpecies, symbols, loadTime);
+  }
+
+  /**
+   * Fills the experiment table from rows counted by an aggregation service instead of loading all
+   * samples. The samples of an experiment are only fetched once one of its summaries is selected.
+   */
+  private ProjectSnapshot loadSummary(String space, String project,
+      Map<String, Experiment> experiments, Map<String, Long> versions) {
+    String projectID = "/" + space + "/" + project;
+    long loadTime = System.currentTimeMillis();
+    Map<String, Object> params = new HashMap<>();
+    params.put("project", projectID);
+    CompletableFuture<ProjectDesign> design = parseDesignAsync(
+        experiments.get(ExperimentCodeFunctions.getInfoExperimentID(space, project)));
+    QueryTableModel table = openbis.getAggregationService(SUMMARY_SERVICE, params);
+
+    Map<Tuple, SummaryRow> rows = new LinkedHashMap<>();
+    for (Serializable[] row : table.getRows()) {
+      String expID = (String) row[0];
+      String date = (String) row[1];
+      SampleType type = parseSampleType((String) row[2]);
+      int count = ((Number) row[4]).intValue();
+      Experiment experiment = experiments.get(expID);
+      if (!BARCODE_SAMPLES.contains(type) || experiment == null) {
+        continue;
+      }
+      // rows are ordered by registration, so like when grouping loaded samples the first sample
+      // type of a group decides its bio type
+      Tuple tpl = new Tuple(date, expID);
+      SummaryRow summaryRow = rows.get(tpl);
+      if (summaryRow == null) {
+        Map<String, String> sampleProperties = new HashMap<>();
+        sampleProperties.put("Q_SAMPLE_TYPE", (String) row[3]);
+        String bioType = getBioType(type, sampleProperties, experiment.getProperties());
+        rows.put(tpl, new SummaryRow(bioType, count));
+      } else {
+        summaryRow.count += count;
+      }
+    }
+
+    Map<String, String> sampleCodeToSpecies = new ConcurrentHashMap<>();
+    PropertySymbolTable symbols = new PropertySymbolTable();
+    Map<String, ExperimentSamples> samplesByExperiment = new HashMap<>();
+    Map<Tuple, ExperimentBarcodeSummary> summaries = new LinkedHashMap<>();
+    for (Map.Entry<Tuple, SummaryRow> entry : rows.entrySet()) {
+      String date = (String) entry.getKey().getOne();
+      String expID = (String) entry.getKey().getTwo();
+      String expName = experiments.get(expID).getProperties().get("Q_SECONDARY_NAME");
+      if (expName == null || expName.isEmpty())
+        expName = expID;
+      ExperimentSamples samples = samplesByExperiment.computeIfAbsent(expID,
+          id -> new ExperimentSamples(space, project, id, sampleCodeToSpecies, symbols));
+      summaries.put(entry.getKey(), new ExperimentBarcodeSummary(entry.getValue().bioType,
+          Integer.toString(entry.getValue().count), expName, date, () -> {
+            List<BarcodeSample> group = samples.getGroup(date);
+            // the cached snapshot grows by the property values of the loaded samples
+            snapshots.reweigh(projectID);
+            return group;
+          }));
+    }
+
+    return new ProjectSnapshot(projectID, versions, experiments, summaries, design.join(),
+        sampleCodeToSpecies, symbols, loadTime);
+  }
+
+  private boolean isRecent(ProjectSnapshot cached) {
+    return System.currentTimeMillis() - cached.getFullLoadTime() < maxFullLoadAgeMillis;
+  }
+
+  private boolean canRefresh(ProjectSnapshot cached, Map<String, Long> versions) {
+    return cached.isComplete() && isRecent(cached)
+        && versions.keySet().containsAll(cached.getExperimentVersions().keySet());
+  }
+
+  /**
+   * Fetches the samples of all experiments that were added or modified since the cached snapshot
+   * was loaded and replaces the samples the snapshot has of them. Samples that were deleted or
+   * moved to another experiment modify their experiment, so they are removed as well. The cached
+   * snapshot itself is not changed, it may still be used by other sessions.
+   */
+  private ProjectSnapshot refresh(ProjectSnapshot cached, String space, String project,
+      Map<String, Experiment> experiments, Map<String, Long> versions) {
+    String projectID = "/" + space + "/" + project;
+    Set<String> changedExperiments = new HashSet<>();
+    for (Map.Entry<String, Long> version : versions.entrySet()) {
+      if (!version.getValue().equals(cached.getExperimentVersions().get(version.getKey()))) {
+        changedExperiments.add(version.getKey());
+      }
+    }
+    Map<String, BarcodeSample> changedByCode = new LinkedHashMap<>();
+    for (String experimentID : changedExperiments) {
+      for (Sample s : searchSamplesOfExperiment(space, project, experimentID)) {
+        changedByCode.put(s.getCode(), BarcodeSample.fromSample(s, cached.getSymbols()));
+      }
+    }
+    LOG.debug("Merging {} samples of {} changed experiments into cached project {}.",
+        changedByCode.size(), changedExperiments.size(), projectID);
+
+    Map<Tuple, SampleGroup> groups = new LinkedHashMap<>();
+    Map<String, String> sampleCodeToSpecies = new HashMap<>();
+    for (ExperimentBarcodeSummary summary : cached.getSummaries()) {
+      for (BarcodeSample s : summary.getSamples()) {
+        if (!changedExperiments.contains(s.getExperimentIdentifierOrNull())
+            && !changedByCode.containsKey(s.getCode())) {
+          addSample(s, experiments, groups, sampleCodeToSpecies);
+        }
+      }
+    }
+    for (BarcodeSample s : changedByCode.values()) {
+      addSample(s, experiments, groups, sampleCodeToSpecies);
+    }
+
+    String designID = ExperimentCodeFunctions.getInfoExperimentID(space, project);
+    ProjectDesign design = cached.getDesign();
+    Experiment designExperiment = experiments.get(designID);
+    if (designExperiment != null && changedExperiments.contains(designID)) {
+      design = getDesign(designExperiment, versions.get(designID));
+    }
+    return new ProjectSnapshot(projectID, versions, experiments, toSummaries(groups), design,
+        sampleCodeToSpecies, cached.getSymbols(), cached.getFullLoadTime());
+  }
+
+  private List<Sample> searchSamplesOfExperiment(String space, String project,
+      String experimentID) {
+    String[] split = experimentID.split("/");
+    SearchCriteria experimentCriteria = new SearchCriteria();
+    experimentCriteria
+        .addMatchClause(MatchClause.createAttributeMatch(MatchClauseAttribute.SPACE, space));
+    experimentCriteria
+        .addMatchClause(MatchClause.createAttributeMatch(MatchClauseAttribute.PROJECT, project));
+    experimentCriteria.addMatchClause(
+        MatchClause.createAttributeMatch(MatchClauseAttribute.CODE, split[split.length - 1]));
+    SearchCriteria sc = new SearchCriteria();
+    sc.addSubCriteria(SearchSubCriteria.createExperimentCriteria(experimentCriteria));
+    // the service of the shared client limits and repeats this search like the client's reads
+    return openbis.getOpenbisInfoService().searchForSamples(openbis.getSessionToken(), sc,
+        EnumSet.of(SampleFetchOption.PROPERTIES, SampleFetchOption.PARENTS,
+            SampleFetchOption.CHILDREN));
+  }
+
+  private static String formatRegistrationDay(BarcodeSample s) {
+    return new SimpleDateFormat("yy-MM-dd").format(s.getRegistrationDate());
+  }
+
+  private static class SummaryRow {
+
+    private final String bioType;
+    private int count;
+
+    SummaryRow(String bioType, int count) {
+      this.bioType = bioType;
+      this.count = count;
+    }
+  }
+
+  /**
+   * Barcode samples of one experiment and registration day, collected before they are summarized
+   */
+  private static class SampleGroup {
+
+    private final String bioType;
+    private final String expName;
+    private final String date;
+    private final List<BarcodeSample> samples = new ArrayList<>();
+
+    SampleGroup(String bioType, String expName, String date) {
+      this.bioType = bioType;
+      this.expName = expName;
+      this.date = date;
+    }
+  }
+
+  private static Map<Tuple, ExperimentBarcodeSummary> toSummaries(Map<Tuple, SampleGroup> groups) {
+    Map<Tuple, ExperimentBarcodeSummary> res = new LinkedHashMap<>();
+    for (Map.Entry<Tuple, SampleGroup> entry : groups.entrySet()) {
+      SampleGroup group = entry.getValue();
+      res.put(entry.getKey(),
+          new ExperimentBarcodeSummary(group.bioType, group.expName, group.date, group.samples));
+    }
+    return res;
+  }
+
+  /**
+   * Barcode samples of one experiment, fetched with parents and children the first time one of the
+   * summaries of the experiment needs them. Other samples only add the species of biological
+   * entities and are not kept.
+   */
+  private class ExperimentSamples {
+
+    private final String space;
+    private final String project;
+    private final String experimentID;
+    private final Map<String, String> sampleCodeToSpecies;
+    private final PropertySymbolTable symbols;
+    private List<BarcodeSample> samples;
+
+    ExperimentSamples(String space, String project, String experimentID,
+        Map<String, String> sampleCodeToSpecies, PropertySymbolTable symbols) {
+      this.space = space;
+      this.project = project;
+      this.experimentID = experimentID;
+      this.sampleCodeToSpecies = sampleCodeToSpecies;
+      this.symbols = symbols;
+    }
+
+    /**
+     * @param date registration day of the group, formatted as yy-MM-dd
+     * @return the barcode samples of the experiment registered on that day
+     */
+    synchronized List<BarcodeSample> getGroup(String date) {
+      if (samples == null) {
+        samples = search();
+      }
+      List<BarcodeSample> res = new ArrayList<>();
+      for (BarcodeSample s : samples) {
+        if (date.equals(formatRegistrationDay(s))) {
+          res.add(s);
+        }
+      }
+      return res;
+    }
+
+    private List<BarcodeSample> search() {
+      List<Sample> found = searchSamplesOfExperiment(space, project, experimentID);
+      List<BarcodeSample> res = new ArrayList<>(found.size());
+      for (Sample sample : found) {
+        BarcodeSample s = BarcodeSample.fromSample(sample, symbols);
+        SampleType type = parseSampleType(s);
+        if (BARCODE_SAMPLES.contains(type)) {
+          res.add(s);
+        }
+        if (type == SampleType.Q_BIOLOGICAL_ENTITY) {
+          String ncbiCode = s.getProperty("Q_NCBI_ORGANISM");
+          String species = ncbiCode == null ? null : vocabularies.getShortSpeciesName(ncbiCode);
+          if (species != null) {
+            sampleCodeToSpecies.put(s.getCode(), species);
+          }
+        }
+      }
+      LOG.debug("Loaded {} samples of experiment {}.", res.size(), experimentID);
+      return res;
+    }
+  }
+
+  private static Map<String, Long> getVersions(Map<String, Experiment> experiments) {
+    Map<String, Long> res = new HashMap<>();
+    for (Experiment e : experiments.values()) {
+      res.put(e.getIdentifier(), getVersion(e));
+    }
+    return res;
+  }
+
+  private static long getVersion(Experiment e) {
+    EntityRegistrationDetails details = e.getRegistrationDetails();
+    Date modified = details == null ? null : details.getModificationDate();
+    return modified == null ? 0 : modified.getTime();
+  }
+
+  // table selection is sorted by sample registration date
+  private void addSample(BarcodeSample s, Map<String, Experiment> experiments,
+      Map<Tuple, SampleGroup> groups, Map<String, String> sampleCodeToSpecies) {
+    SampleType type = parseSampleType(s);
+    if (type == SampleType.Q_BIOLOGICAL_ENTITY) {
+      String ncbiCode = s.getProperty("Q_NCBI_ORGANISM");
+      if (ncbiCode != null) {
+        sampleCodeToSpecies.put(s.getCode(), vocabularies.getShortSpeciesName(ncbiCode));
+      }
+    }
+    if (!BARCODE_SAMPLES.contains(type)) {
+      return;
+    }
+    String dt = formatRegistrationDay(s);
+    String expID = s.getExperimentIdentifierOrNull();
+    // all experiment properties come from the experiments fetched before
+    Map<String, String> expProperties = experiments.get(expID).getProperties();
+    String expName = expProperties.get("Q_SECONDARY_NAME");
+    if (expName == null || expName.isEmpty())
+      expName = expID;
+    Tuple tpl = new Tuple(dt, expID);
+    SampleGroup group = groups.get(tpl);
+    if (group == null) {
+      group = new SampleGroup(getBioType(type, s.getProperties(), expProperties), expName, dt);
+      groups.put(tpl, group);
+    }
+    group.samples.add(s);
+  }
+
+  private static String getBioType(SampleType type, Map<String, String> sampleProperties,
+      Map<String, String> expProperties) {
+    String bioType = null;
+    switch (type) {
+      case Q_BIOLOGICAL_ENTITY:
+        bioType = "Source Species";
+        break;
+      case Q_BIOLOGICAL_SAMPLE:
+        bioType = "Tissue Extracts";
+        break;
+      case Q_TEST_SAMPLE:
+        bioType = sampleProperties.get("Q_SAMPLE_TYPE");
+        break;
+      case Q_NGS_SINGLE_SAMPLE_RUN:
+        String seqType = expProperties.get("Q_SEQUENCING_TYPE");
+        if (seqType != null) {
+          bioType = seqType + "seq";
+        } else {
+          bioType = "Sequencing";
+        }
+        break;
+      case Q_MHC_LIGAND_EXTRACT:
+        bioType = "MHC Ligands";
+        break;
+      // normal MS Runs use the Barcodes of Peptides or Proteins to register data and so are
+      // not listed here
+      case Q_MS_RUN:
+        bioType = "Wash Runs";
+        break;
+      case Q_BMI_GENERIC_IMAGING_RUN:
+        bioType = expProperties.get("Q_BMI_MODALITY") + " runs";
+      default:
+        break;
+    }
+    return bioType;
+  }
+
+  private CompletableFuture<ProjectDesign> parseDesignAsync(Experiment designExperiment) {
+    if (designExperiment == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    long version = getVersion(designExperiment);
+    // parsing only needs CPU, so it runs in the common pool instead of the pool that waits for it
+    return CompletableFuture.supplyAsync(() -> getDesign(designExperiment, version));
+  }
+
+  private ProjectDesign getDesign(Experiment designExperiment, long version) {
+    return designs.get(designExperiment.getIdentifier(), version,
+        () -> parseDesign(designExperiment));
+  }
+
+  private ProjectDesign parseDesign(Experiment designExperiment) {
+    StudyXMLParser studyParser = new StudyXMLParser();
+    // parse experimental design for later use
+    String xmlString = designExperiment.getProperties().get("Q_EXPERIMENTAL_SETUP");
+    JAXBElement<Qexperiment> expDesign = null;
+
+    try {
+      expDesign = studyParser.parseXMLString(xmlString);
+    } catch (JAXBException e) {
+      LOG.error("could not parse experimental design xml!", e);
+    }
+
+    Set<String> propertyLabels = new HashSet<>();
+    Set<String> experimentalFactorLabels = new HashSet<>();
+    Map<String, List<Property>> propsForSamples = new HashMap<>();
+    Map<Pair<String, String>, Property> experimentalFactorsForLabelsAndSamples = new HashMap<>();
+
+    if (expDesign != null) {
+      experimentalFactorLabels = studyParser.getFactorLabels(expDesign);
+      experimentalFactorsForLabelsAndSamples = studyParser.getFactorsForLabelsAndSamples(expDesign);
+
+      propsForSamples = studyParser.getPropertiesForSampleCode(expDesign);
+
+      for (List<Property> sampleProps : propsForSamples.values()) {
+        for (Property prop : sampleProps) {
+          propertyLabels.add(prop.getLabel());
+        }
+      }
+    }
+    List<String> availableProperties = new ArrayList<>();
+    availableProperties.addAll(propertyLabels);
+    availableProperties.addAll(experimentalFactorLabels);
+    return new ProjectDesign(availableProperties, experimentalFactorsForLabelsAndSamples,
+        propsForSamples);
+  }
+
+  private SampleType parseSampleType(BarcodeSample s) {
+    return parseSampleType(s.getSampleTypeCode());
+  }
+
+  private SampleType parseSampleType(String sampleTypeCode) {
+    SampleType type = null;
+    try {
+      type = SampleType.valueOf(sampleTypeCode);
+    } catch (IllegalArgumentException e) {
+      LOG.warn(sampleTypeCode
+          + " does not seem to be a supported sample type. Consider adding it to the data model library enums.");
+    }
+    return type;
+  }
+}
@@ -0,0 +1,110 @@
+package life.qbic.portal.portlet.io;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import life.qbic.portal.portlet.model.ProjectSnapshot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Application-wide cache of project snapshots, so a project opened by several users shortly after
+ * each other is only loaded from openBIS once. Memory is bounded by the summed weight of the
+ * snapshots (roughly the number of samples they hold); the least recently used snapshots are
+ * evicted first. Snapshots whose samples are loaded on demand grow after they were cached, they are
+ * weighed again with {@link #reweigh(String)}. Whether a cached snapshot is still current is decided by the caller, see
+ * {@link ProjectSnapshot#isCurrent(Map)}.
+ *
+ * There is one cache per application, see {@link #start()}.
+ */
+public class ProjectSnapshotCache {
+
+  private static final Logger LOG = LogManager.getLogger(ProjectSnapshotCache.class);
+  private static final int MAX_WEIGHT = 500000;
+
+  private static ProjectSnapshotCache instance;
+
+  private final int maxWeight;
+  // access order, the eldest entry is the least recently used one
+  private final LinkedHashMap<String, ProjectSnapshot> snapshots =
+      new LinkedHashMap<>(16, 0.75f, true);
+  // weight of every cached snapshot when it was last weighed
+  private final Map<String, Integer> weights = new HashMap<>();
+  private int weight = 0;
+
+  ProjectSnapshotCache(int maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  public static synchronized ProjectSnapshotCache start() {
+    if (instance == null) {
+      instance = new ProjectSnapshotCache(MAX_WEIGHT);
+    }
+    return instance;
+  }
+
+  /**
+   * @param projectID identifier of a project
+   * @return the cached snapshot of the project, null if there is none
+   */
+  public synchronized ProjectSnapshot get(String projectID) {
+    return snapshots.get(projectID);
+  }
+
+  /**
+   * Caches the snapshot of a project, replacing an older one, and evicts the least recently used
+   * snapshots until the cache fits its weight limit again. Snapshots heavier than the limit are
+   * not cached at all.
+   */
+  public synchronized void put(ProjectSnapshot snapshot) {
+    invalidate(snapshot.getProjectID());
+    int snapshotWeight = snapshot.getWeight();
+    if (snapshotWeight > maxWeight) {
+      LOG.debug("Not caching project {}, it is too large.", snapshot.getProjectID());
+      return;
+    }
+    snapshots.put(snapshot.getProjectID(), snapshot);
+    weights.put(snapshot.getProjectID(), snapshotWeight);
+    weight += snapshotWeight;
+    evict();
+  }
+
+  /**
+   * Weighs the cached snapshot of a project again, e.g. after some of its samples were loaded, and
+   * evicts the least recently used snapshots if the cache no longer fits its weight limit
+   *
+   * @param projectID identifier of a project
+   */
+  public synchronized void reweigh(String projectID) {
+    ProjectSnapshot snapshot = snapshots.get(projectID);
+    if (snapshot == null) {
+      return;
+    }
+    int snapshotWeight = snapshot.getWeight();
+    weight += snapshotWeight - weights.put(projectID, snapshotWeight);
+    evict();
+  }
+
+  public synchronized void invalidate(String projectID) {
+    snapshots.remove(projectID);
+    Integer old = weights.remove(projectID);
+    if (old != null) {
+      weight -= old;
+    }
+  }
+
+  private void evict() {
+    Iterator<ProjectSnapshot> eldest = snapshots.values().iterator();
+    while (weight > maxWeight) {
+      ProjectSnapshot evicted = eldest.next();
+      eldest.remove();
+      weight -= weights.remove(evicted.getProjectID());
+      LOG.debug("Evicted project {} from snapshot cache.", evicted.getProjectID());
+    }
+  }
+
+  synchronized int getWeight() {
+    return weight;
+  }
+}
@@ -0,0 +1,84 @@
+package life.qbic.portal.portlet.io;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import life.qbic.openbis.openbisclient.IOpenBisClient;
+import life.qbic.portal.portlet.util.TTLCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Application-wide cache of openBIS vocabularies. Vocabularies are loaded once for all sessions and
+ * reloaded when they are older than an hour. For the NCBI taxonomy, the short species names shown
+ * on the labels (e.g. "A. thaliana") are computed once per load.
+ *
+ * There is one cache per application, see {@link #start(IOpenBisClient)}.
+ */
+public class VocabularyCache {
+
+  private static final Logger LOG = LogManager.getLogger(VocabularyCache.class);
+  private static final String TAXONOMY = "Q_NCBI_TAXONOMY";
+  private static final long TTL_MINUTES = 60;
+
+  private static VocabularyCache instance;
+
+  private final IOpenBisClient openbis;
+  private final TTLCache<String, Map<String, String>> vocabularies =
+      new TTLCache<>(TTL_MINUTES, TimeUnit.MINUTES);
+  private final TTLCache<String, Map<String, String>> shortSpeciesNames =
+      new TTLCache<>(TTL_MINUTES, TimeUnit.MINUTES);
+
+  VocabularyCache(IOpenBisClient openbis) {
+    this.openbis = openbis;
+  }
+
+  /**
+   * Starts the vocabulary cache of this application, if it was not started before
+   *
+   * @param openbis client used to load vocabularies
+   * @return the vocabulary cache of this application
+   */
+  public static synchronized VocabularyCache start(IOpenBisClient openbis) {
+    if (instance == null) {
+      instance = new VocabularyCache(openbis);
+    }
+    return instance;
+  }
+
+  /**
+   * @param vocabulary code of the vocabulary, e.g. Q_NCBI_TAXONOMY
+   * @return unmodifiable map of the labels of the vocabulary to their codes
+   */
+  public Map<String, String> getLabelsToCodes(String vocabulary) {
+    return vocabularies.get(vocabulary, v -> Collections
+        .unmodifiableMap(new HashMap<>(openbis.getVocabCodesAndLabelsForVocab(v))));
+  }
+
+  /**
+   * @param ncbiCode NCBI taxonomy code of a species
+   * @return the abbreviated species name, e.g. "A. thaliana", the full name if it can not be
+   *         abbreviated and null for unknown codes
+   */
+  public String getShortSpeciesName(String ncbiCode) {
+    return shortSpeciesNames.get(TAXONOMY, t -> computeShortSpeciesNames()).get(ncbiCode);
+  }
+
+  private Map<String, String> computeShortSpeciesNames() {
+    Map<String, String> res = new HashMap<>();
+    for (Map.Entry<String, String> entry : getLabelsToCodes(TAXONOMY).entrySet()) {
+      res.put(entry.getValue(), shorten(entry.getKey()));
+    }
+    return Collections.unmodifiableMap(res);
+  }
+
+  static String shorten(String species) {
+    String[] speciesNames = species.split(" ");
+    if (speciesNames.length < 2 || speciesNames[0].isEmpty()) {
+      LOG.warn("Could not shorten species: " + species);
+      return species;
+    }
+    return speciesNames[0].charAt(0) + ". " + speciesNames[1]; // --> A. thaliana
+  }
+}
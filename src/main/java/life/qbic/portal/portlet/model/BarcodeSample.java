@@ -0,0 +1,243 @@
+package life.qbic.portal.portlet.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
+
+/**
+ * Immutable projection of an openBIS sample holding only what the barcode creation reads. Full
+ * {@link Sample} objects carry their parent and child graphs, registration details and all
+ * properties, which is a lot of memory to keep in every session for large projects.
+ *
+ * Values of the properties in {@link #INTERNED_KEYS}, the sample type and the experiment are kept
+ * as ids of the {@link PropertySymbolTable} of the project, so repeated values are only stored once
+ * per project. Values that are mostly unique per sample, like secondary names, are stored as they
+ * are, interning them would only grow the symbol table.
+ */
+public class BarcodeSample {
+
+  /**
+   * Sample properties used for labels, sample tables and bio types; all others are dropped
+   */
+  public static final List<String> PROPERTY_KEYS = Collections.unmodifiableList(Arrays.asList(
+      "Q_SECONDARY_NAME", "Q_EXTERNALDB_ID", "Q_PRIMARY_TISSUE", "Q_TISSUE_DETAILED",
+      "Q_SAMPLE_TYPE", "Q_MHC_CLASS", "Q_ANTIBODY", "Q_NCBI_ORGANISM"));
+
+  /**
+   * Properties of {@link #PROPERTY_KEYS} with few distinct values per project, these are interned
+   */
+  public static final Set<String> INTERNED_KEYS = Collections.unmodifiableSet(new HashSet<>(
+      Arrays.asList("Q_PRIMARY_TISSUE", "Q_SAMPLE_TYPE", "Q_MHC_CLASS", "Q_NCBI_ORGANISM")));
+
+  private static final Map<String, Integer> KEY_INDEX = new HashMap<>();
+  // by index of the key in PROPERTY_KEYS: whether it is interned and its index into propertyIDs or
+  // values
+  private static final boolean[] INTERNED = new boolean[PROPERTY_KEYS.size()];
+  private static final int[] SLOTS = new int[PROPERTY_KEYS.size()];
+  private static final int NUM_INTERNED;
+
+  static {
+    int interned = 0;
+    int other = 0;
+    for (int i = 0; i < PROPERTY_KEYS.size(); i++) {
+      KEY_INDEX.put(PROPERTY_KEYS.get(i), i);
+      INTERNED[i] = INTERNED_KEYS.contains(PROPERTY_KEYS.get(i));
+      SLOTS[i] = INTERNED[i] ? interned++ : other++;
+    }
+    NUM_INTERNED = interned;
+  }
+
+  private final String code;
+  private final String sampleTypeCode;
+  private final String experimentID;
+  private final long registrationDate;
+  private final List<String> parentCodes;
+  private final PropertySymbolTable symbols;
+  // ids of the values of interned properties and values of the others, see SLOTS
+  private final int[] propertyIDs;
+  private final String[] values;
+
+  /**
+   * @param properties properties of the sample, only the ones in {@link #PROPERTY_KEYS} are kept
+   * @param symbols symbol table of the project the sample belongs to
+   */
+  public BarcodeSample(String code, String sampleTypeCode, String experimentID,
+      Date registrationDate, List<String> parentCodes, Map<String, String> properties,
+      PropertySymbolTable symbols) {
+    this.code = code;
+    this.sampleTypeCode = symbols.canonical(sampleTypeCode);
+    this.experimentID = symbols.canonical(experimentID);
+    this.registrationDate = registrationDate == null ? 0 : registrationDate.getTime();
+    this.parentCodes = parentCodes.isEmpty() ? Collections.emptyList()
+        : Collections.unmodifiableList(parentCodes);
+    this.symbols = symbols;
+    this.propertyIDs = new int[NUM_INTERNED];
+    this.values = new String[PROPERTY_KEYS.size() - NUM_INTERNED];
+    for (int i = 0; i < PROPERTY_KEYS.size(); i++) {
+      String value = properties.get(PROPERTY_KEYS.get(i));
+      if (INTERNED[i]) {
+        propertyIDs[SLOTS[i]] = symbols.intern(value);
+      } else {
+        values[SLOTS[i]] = value;
+      }
+    }
+  }
+
+  /**
+   * Copies the fields used for barcodes from an openBIS sample
+   *
+   * @param sample sample fetched from openBIS, with parents if parent codes are needed
+   * @param symbols symbol table of the project the sample belongs to
+   * @return the projection of the sample
+   */
+  public static BarcodeSample fromSample(Sample sample, PropertySymbolTable symbols) {
+    List<String> parentCodes = new ArrayList<>();
+    List<Sample> parents = sample.getParents();
+    if (parents != null) {
+      for (Sample parent : parents) {
+        parentCodes.add(parent.getCode());
+      }
+    }
+    Map<String, String> properties = sample.getProperties();
+    if (properties == null) {
+      properties = Collections.emptyMap();
+    }
+    Date registrationDate = sample.getRegistrationDetails() == null ? null
+        : sample.getRegistrationDetails().getRegistrationDate();
+    return new BarcodeSample(sample.getCode(), sample.getSampleTypeCode(),
+        sample.getExperimentIdentifierOrNull(), registrationDate, parentCodes, properties,
+        symbols);
+  }
+
+  public String getCode() {
+    return code;
+  }
+
+  public String getSampleTypeCode() {
+    return sampleTypeCode;
+  }
+
+  public String getExperimentIdentifierOrNull() {
+    return experimentID;
+  }
+
+  public Date getRegistrationDate() {
+    return new Date(registrationDate);
+  }
+
+  public List<String> getParentCodes() {
+    return parentCodes;
+  }
+
+  /**
+   * @param key property code
+   * @return value of the property, null if it is not set or not one of {@link #PROPERTY_KEYS}
+   */
+  public String getProperty(String key) {
+    Integer index = KEY_INDEX.get(key);
+    return index == null ? null : getProperty(index);
+  }
+
+  private String getProperty(int index) {
+    return INTERNED[index] ? symbols.get(propertyIDs[SLOTS[index]]) : values[SLOTS[index]];
+  }
+
+  /**
+   * @return read-only view of the properties listed in {@link #PROPERTY_KEYS} that are set for
+   *         this sample
+   */
+  public Map<String, String> getProperties() {
+    return new PropertyView();
+  }
+
+  @Override
+  public int hashCode() {
+    return code.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null || getClass() != obj.getClass())
+      return false;
+    return code.equals(((BarcodeSample) obj).code);
+  }
+
+  @Override
+  public String toString() {
+    return code;
+  }
+
+  private class PropertyView extends AbstractMap<String, String> {
+
+    @Override
+    public String get(Object key) {
+      return key instanceof String ? getProperty((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+      return new AbstractSet<Entry<String, String>>() {
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+          return new Iterator<Entry<String, String>>() {
+
+            private int next = advance(0);
+
+            private int advance(int from) {
+              while (from < PROPERTY_KEYS.size() && getProperty(from) == null) {
+                from++;
+              }
+              return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return next < PROPERTY_KEYS.size();
+            }
+
+            @Override
+            public Entry<String, String> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              Entry<String, String> entry =
+                  new SimpleImmutableEntry<>(PROPERTY_KEYS.get(next), getProperty(next));
+              next = advance(next + 1);
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          int size = 0;
+          for (int i = 0; i < PROPERTY_KEYS.size(); i++) {
+            if (getProperty(i) != null) {
+              size++;
+            }
+          }
+          return size;
+        }
+      };
+    }
+  }
+}
@@ -16,40 +16,59 @@
 package life.qbic.portal.portlet.model;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 
-import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
-
 /**
  * Bean Object representing an experiment with some information about its samples to provide an
- * overview, e.g. for barcode creation
+ * overview, e.g. for barcode creation. Summaries are shared by the sessions showing the same
+ * project and cannot be changed, samples that are loaded on demand are loaded once.
  * 
  * @author Andreas Friedrich
  * 
  */
 public class ExperimentBarcodeSummary {
 
-  private String bioType;
-  private String amount;
-  private String experimentID;
-  private String date;
-  private List<Sample> samples;
+  private final String bioType;
+  private final String amount;
+  private final String experimentID;
+  private final String date;
+  // null until loaded by the sample loader
+  private volatile List<BarcodeSample> samples;
+  private Supplier<List<BarcodeSample>> sampleLoader;
 
   /**
    * Creates a new ExperimentBarcodeSummaryBean
    * 
    * @param bioType the type of samples in this experiment, for example tissue or measurement type
+   * @param samples the samples of this summary
+   */
+  public ExperimentBarcodeSummary(String bioType, String expID, String date,
+      List<BarcodeSample> samples) {
+    this.bioType = bioType;
+    this.amount = Integer.toString(samples.size());
+    this.experimentID = expID;
+    this.date = date;
+    this.samples = Collections.unmodifiableList(new ArrayList<>(samples));
+  }
+
+  /**
+   * Creates a new ExperimentBarcodeSummaryBean whose samples are only loaded when they are first
+   * needed
+   *
+   * @param bioType the type of samples in this experiment, for example tissue or measurement type
    * @param amount the amount of samples in this experiment
+   * @param sampleLoader loads the samples of this summary
    */
-  public ExperimentBarcodeSummary(String bioType, String amount, String expID, String date) {
+  public ExperimentBarcodeSummary(String bioType, String amount, String expID, String date,
+      Supplier<List<BarcodeSample>> sampleLoader) {
     this.bioType = bioType;
     this.amount = amount;
     this.experimentID = expID;
     this.date = date;
-    this.samples = new ArrayList<Sample>();
+    this.sampleLoader = sampleLoader;
   }
 
   // show only code
@@ -70,28 +89,33 @@ public class ExperimentBarcodeSummary {
     return bioType;
   }
 
-  public void setBio_Type(String bio_Type) {
-    this.bioType = bio_Type;
-  }
-
-  public void increment() {
-    this.amount = Integer.toString(Integer.parseInt(amount) + 1);
-  }
-
   public String getAmount() {
     return amount;
   }
 
-  public void setAmount(String amount) {
-    this.amount = amount;
-  }
-
-  public void addSample(Sample s) {
-    this.samples.add(s);
+  /**
+   * @return unmodifiable list of the samples, loaded first if this has not been done before
+   */
+  public List<BarcodeSample> getSamples() {
+    List<BarcodeSample> res = samples;
+    if (res == null) {
+      synchronized (this) {
+        res = samples;
+        if (res == null) {
+          res = Collections.unmodifiableList(new ArrayList<>(sampleLoader.get()));
+          sampleLoader = null;
+          samples = res;
+        }
+      }
+    }
+    return res;
   }
 
-  public List<Sample> getSamples() {
-    return samples;
+  /**
+   * @return true if the samples of this summary are in memory already
+   */
+  public boolean areSamplesLoaded() {
+    return samples != null;
   }
 
 }
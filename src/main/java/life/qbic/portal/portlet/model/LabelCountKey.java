@@ -0,0 +1,75 @@
+package life.qbic.portal.portlet.model;
+
+import java.util.Objects;
+
+/**
+ * Identifies one row of the printed label counts: labels printed by a user for a project on a
+ * certain printer
+ */
+public class LabelCountKey {
+
+  private final String printerName;
+  private final String printerLocation;
+  private final String projectSpace;
+  private final String subProject;
+  private final String userName;
+
+  public LabelCountKey(String printerName, String printerLocation, String projectSpace,
+      String subProject, String userName) {
+    this.printerName = printerName;
+    this.printerLocation = printerLocation;
+    this.projectSpace = projectSpace;
+    this.subProject = subProject;
+    this.userName = userName;
+  }
+
+  public String getPrinterName() {
+    return printerName;
+  }
+
+  public String getPrinterLocation() {
+    return printerLocation;
+  }
+
+  public String getProjectSpace() {
+    return projectSpace;
+  }
+
+  public String getSubProject() {
+    return subProject;
+  }
+
+  public String getUserName() {
+    return userName;
+  }
+
+  public String getProjectIdentifier() {
+    return "/" + projectSpace + "/" + subProject;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(printerName, printerLocation, projectSpace, subProject, userName);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null || getClass() != obj.getClass())
+      return false;
+    LabelCountKey other = (LabelCountKey) obj;
+    return Objects.equals(printerName, other.printerName)
+        && Objects.equals(printerLocation, other.printerLocation)
+        && Objects.equals(projectSpace, other.projectSpace)
+        && Objects.equals(subProject, other.subProject)
+        && Objects.equals(userName, other.userName);
+  }
+
+  @Override
+  public String toString() {
+    return "LabelCountKey{" + "printer='" + printerName + '\'' + ", location='" + printerLocation
+        + '\'' + ", project='" + getProjectIdentifier() + '\'' + ", user='" + userName + '\''
+        + '}';
+  }
+}
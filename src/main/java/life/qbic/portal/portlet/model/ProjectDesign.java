@@ -0,0 +1,37 @@
+package life.qbic.portal.portlet.model;
+
+import java.util.List;
+import java.util.Map;
+import life.qbic.xml.properties.Property;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Parse result of the experimental design XML of a project: the property and factor labels that
+ * can be put on labels and their values per sample code
+ */
+public class ProjectDesign {
+
+  private final List<String> availableProperties;
+  private final Map<Pair<String, String>, Property> experimentalFactorsForLabelsAndSamples;
+  private final Map<String, List<Property>> propsForSamples;
+
+  public ProjectDesign(List<String> availableProperties,
+      Map<Pair<String, String>, Property> experimentalFactorsForLabelsAndSamples,
+      Map<String, List<Property>> propsForSamples) {
+    this.availableProperties = availableProperties;
+    this.experimentalFactorsForLabelsAndSamples = experimentalFactorsForLabelsAndSamples;
+    this.propsForSamples = propsForSamples;
+  }
+
+  public List<String> getAvailableProperties() {
+    return availableProperties;
+  }
+
+  public Map<Pair<String, String>, Property> getExperimentalFactorsForLabelsAndSamples() {
+    return experimentalFactorsForLabelsAndSamples;
+  }
+
+  public Map<String, List<Property>> getPropsForSamples() {
+    return propsForSamples;
+  }
+}
@@ -0,0 +1,129 @@
+package life.qbic.portal.portlet.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Experiment;
+import life.qbic.portal.portlet.util.Tuple;
+
+/**
+ * Everything the barcode view shows for one project, as loaded from openBIS at one point in time.
+ * Snapshots are shared between sessions and cannot be changed after they were created, except that
+ * samples of summaries loaded on demand add their species and property values, see
+ * {@link #isComplete()}.
+ */
+public class ProjectSnapshot {
+
+  private final String projectID;
+  private final Map<String, Long> experimentVersions;
+  private final Map<String, Experiment> experiments;
+  private final Map<Tuple, ExperimentBarcodeSummary> summaries;
+  private final ProjectDesign design;
+  private final Map<String, String> sampleCodeToSpecies;
+  private final PropertySymbolTable symbols;
+  private final long fullLoadTime;
+  private final boolean complete;
+
+  /**
+   * @param projectID identifier of the project
+   * @param experimentVersions modification time of every experiment of the project when it was
+   *        loaded, see {@link #isCurrent(Map)}
+   * @param experiments experiments of the project by identifier
+   * @param summaries summaries of barcode samples, grouped by registration date and experiment
+   * @param design parsed experimental design, null if the project has none
+   * @param sampleCodeToSpecies short species names of the biological entities, has to be
+   *        thread-safe if samples are loaded on demand
+   * @param symbols symbol table the property values of the samples are stored in
+   * @param fullLoadTime when all samples of the project were last loaded from openBIS
+   */
+  public ProjectSnapshot(String projectID, Map<String, Long> experimentVersions,
+      Map<String, Experiment> experiments, Map<Tuple, ExperimentBarcodeSummary> summaries,
+      ProjectDesign design, Map<String, String> sampleCodeToSpecies, PropertySymbolTable symbols,
+      long fullLoadTime) {
+    this.projectID = projectID;
+    this.experimentVersions = Collections.unmodifiableMap(experimentVersions);
+    this.experiments = Collections.unmodifiableMap(experiments);
+    this.summaries = Collections.unmodifiableMap(summaries);
+    this.design = design;
+    this.sampleCodeToSpecies = Collections.unmodifiableMap(sampleCodeToSpecies);
+    this.symbols = symbols;
+    this.fullLoadTime = fullLoadTime;
+    boolean allLoaded = true;
+    for (ExperimentBarcodeSummary summary : summaries.values()) {
+      allLoaded &= summary.areSamplesLoaded();
+    }
+    this.complete = allLoaded;
+  }
+
+  public String getProjectID() {
+    return projectID;
+  }
+
+  /**
+   * @param currentVersions modification times of the experiments of the project as currently
+   *        stored in openBIS
+   * @return true if no experiment was added, removed or modified since the snapshot was loaded
+   */
+  public boolean isCurrent(Map<String, Long> currentVersions) {
+    return experimentVersions.equals(currentVersions);
+  }
+
+  public Map<String, Long> getExperimentVersions() {
+    return experimentVersions;
+  }
+
+  public Map<String, Experiment> getExperiments() {
+    return experiments;
+  }
+
+  public Map<Tuple, ExperimentBarcodeSummary> getSummaryGroups() {
+    return summaries;
+  }
+
+  public Collection<ExperimentBarcodeSummary> getSummaries() {
+    return summaries.values();
+  }
+
+  public ProjectDesign getDesign() {
+    return design;
+  }
+
+  public Map<String, String> getSampleCodeToSpecies() {
+    return sampleCodeToSpecies;
+  }
+
+  /**
+   * @return symbol table of the property values of the samples, samples merged into a later
+   *         snapshot of the project are added to the same table
+   */
+  public PropertySymbolTable getSymbols() {
+    return symbols;
+  }
+
+  public long getFullLoadTime() {
+    return fullLoadTime;
+  }
+
+  /**
+   * @return true if all samples of the snapshot were loaded when it was created, false if they are
+   *         loaded on demand per experiment
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * @return current size of the snapshot in the cache, roughly the number of openBIS objects and
+   *         distinct property values it holds. It grows when samples are loaded on demand.
+   */
+  public int getWeight() {
+    // samples of summaries that are not loaded yet are counted as well, the amount is known before
+    int numSamples = 0;
+    for (ExperimentBarcodeSummary summary : summaries.values()) {
+      numSamples += summary.areSamplesLoaded() ? summary.getSamples().size()
+          : Integer.parseInt(summary.getAmount());
+    }
+    // distinct property values are shared by the samples, but still held by the snapshot
+    return 1 + experiments.size() + numSamples + symbols.size();
+  }
+}
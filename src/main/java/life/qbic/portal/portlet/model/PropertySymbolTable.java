@@ -0,0 +1,67 @@
+package life.qbic.portal.portlet.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Symbol table of the property values of one project. Values like tissues, species or sample
+ * types repeat across thousands of samples, so each distinct value is stored once and samples only
+ * keep its int id, see {@link BarcodeSample}.
+ *
+ * Symbols are only ever added. Interning is synchronized, looking up an id is not.
+ */
+public class PropertySymbolTable {
+
+  /**
+   * Id of values that are not set
+   */
+  public static final int ABSENT = -1;
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private volatile String[] symbols = new String[64];
+  private int size;
+
+  /**
+   * @param value value to store, may be null
+   * @return id of the value in this table, {@link #ABSENT} for null
+   */
+  public synchronized int intern(String value) {
+    if (value == null) {
+      return ABSENT;
+    }
+    Integer id = ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    String[] current = symbols;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, size * 2);
+    }
+    current[size] = value;
+    // publishes the new symbol to readers of ids handed out from now on
+    symbols = current;
+    ids.put(value, size);
+    return size++;
+  }
+
+  /**
+   * @param value value to store, may be null
+   * @return the instance of an equal value kept by this table
+   */
+  public String canonical(String value) {
+    return get(intern(value));
+  }
+
+  /**
+   * @param id id returned by {@link #intern(String)}
+   * @return the value of the id, null for {@link #ABSENT}
+   */
+  public String get(int id) {
+    return id == ABSENT ? null : symbols[id];
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+}
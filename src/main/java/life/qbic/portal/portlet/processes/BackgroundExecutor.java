@@ -0,0 +1,50 @@
+package life.qbic.portal.portlet.processes;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pool shared by all sessions for work that should not run while the Vaadin session is
+ * locked, like loading a project from openBIS. Results have to be applied to the UI with
+ * {@link com.vaadin.ui.UI#access(Runnable)}.
+ *
+ * There is one pool per application, see {@link #start()}.
+ */
+public class BackgroundExecutor implements Executor {
+
+  private static final int THREADS = 8;
+
+  private static BackgroundExecutor instance;
+
+  private final ExecutorService pool;
+
+  private BackgroundExecutor() {
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.pool = Executors.newFixedThreadPool(THREADS, r -> {
+      Thread t = new Thread(r, "barcode-background-" + threadNumber.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public static synchronized BackgroundExecutor start() {
+    if (instance == null) {
+      instance = new BackgroundExecutor();
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.pool.shutdownNow();
+      instance = null;
+    }
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    pool.execute(command);
+  }
+}
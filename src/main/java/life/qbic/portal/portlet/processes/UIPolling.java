@@ -0,0 +1,53 @@
+package life.qbic.portal.portlet.processes;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import com.vaadin.ui.UI;
+
+/**
+ * Polling of UIs that are updated by background jobs, e.g. progress bars or projects loaded
+ * outside of the session lock. Several jobs can run for the same UI at once, like loading a project
+ * while tube barcodes are created, so a UI polls until the last of its jobs ended.
+ */
+public class UIPolling {
+
+  private static final int POLL_INTERVAL_MILLIS = 200;
+
+  // number of running jobs per UI, guarded by itself
+  private static final Map<UI, Integer> JOBS = new WeakHashMap<>();
+
+  private UIPolling() {}
+
+  /**
+   * Starts polling of the UI if it does not poll already. Every call has to be followed by one
+   * call of {@link #endJob(UI)} once the job is done.
+   *
+   * @param ui UI updated by the job
+   */
+  public static void startJob(UI ui) {
+    synchronized (JOBS) {
+      JOBS.merge(ui, 1, Integer::sum);
+      ui.setPollInterval(POLL_INTERVAL_MILLIS);
+    }
+  }
+
+  /**
+   * Stops polling of the UI if no other job of it is running anymore
+   *
+   * @param ui UI updated by the job
+   */
+  public static void endJob(UI ui) {
+    synchronized (JOBS) {
+      Integer running = JOBS.get(ui);
+      if (running == null) {
+        return;
+      }
+      if (running > 1) {
+        JOBS.put(ui, running - 1);
+      } else {
+        JOBS.remove(ui);
+        ui.setPollInterval(-1);
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package life.qbic.portal.portlet.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import life.qbic.datamodel.printing.IBarcodeBean;
+import life.qbic.datamodel.sorters.SampleCodeComparator;
+import life.qbic.datamodel.sorters.SampleExtIDComparator;
+import life.qbic.datamodel.sorters.SampleSecondaryNameComparator;
+import life.qbic.datamodel.sorters.SampleTypeComparator;
+import life.qbic.portal.portlet.model.SortBy;
+
+/**
+ * Sorts barcode beans in the order of the data model comparators. Sorting by barcode ID computes
+ * the sort key of every bean once instead of parsing both codes on every comparison. Large
+ * selections are sorted in parallel. All sorts are stable, like {@link List#sort(Comparator)}.
+ */
+public class BarcodeBeanSorter {
+
+  // selections of at least this many beans are sorted in parallel
+  private static final int PARALLEL_THRESHOLD = 5000;
+
+  private BarcodeBeanSorter() {}
+
+  /**
+   * @param barcodeBeans beans to sort in place
+   * @param sorter order of the beans
+   */
+  public static void sort(List<IBarcodeBean> barcodeBeans, SortBy sorter) {
+    switch (sorter) {
+      case BARCODE_ID:
+        sortByCode(barcodeBeans);
+        break;
+      case EXT_ID:
+        sort(barcodeBeans, SampleExtIDComparator.getInstance());
+        break;
+      case SAMPLE_TYPE:
+        sort(barcodeBeans, SampleTypeComparator.getInstance());
+        break;
+      case SECONDARY_NAME:
+        sort(barcodeBeans, SampleSecondaryNameComparator.getInstance());
+        break;
+    }
+  }
+
+  private static <T> void sort(List<T> list, Comparator<? super T> comparator) {
+    if (list.size() < PARALLEL_THRESHOLD) {
+      list.sort(comparator);
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    T[] array = (T[]) list.toArray();
+    Arrays.parallelSort(array, comparator);
+    for (int i = 0; i < array.length; i++) {
+      list.set(i, array[i]);
+    }
+  }
+
+  /**
+   * {@link SampleCodeComparator} orders QBiC codes by project, then by the letter after the
+   * counter (999A before 001B), then by the counter. Codes of entities and codes not following
+   * that pattern are compared as strings. Keys are only used if all codes follow the pattern, mixed
+   * selections are sorted by the comparator itself to keep its order.
+   */
+  private static void sortByCode(List<IBarcodeBean> barcodeBeans) {
+    KeyedBean[] keyed = new KeyedBean[barcodeBeans.size()];
+    for (int i = 0; i < keyed.length; i++) {
+      IBarcodeBean bean = barcodeBeans.get(i);
+      String key = codeKey(bean.getCode());
+      if (key == null) {
+        sort(barcodeBeans, SampleCodeComparator.getInstance());
+        return;
+      }
+      keyed[i] = new KeyedBean(key, bean);
+    }
+    Comparator<KeyedBean> byKey = Comparator.comparing(k -> k.key);
+    if (keyed.length < PARALLEL_THRESHOLD) {
+      Arrays.sort(keyed, byKey);
+    } else {
+      Arrays.parallelSort(keyed, byKey);
+    }
+    for (int i = 0; i < keyed.length; i++) {
+      barcodeBeans.set(i, keyed[i].bean);
+    }
+  }
+
+  /**
+   * @return project, letter and counter of a QBiC code in the order they are compared, null if the
+   *         code is not compared by them
+   */
+  static String codeKey(String code) {
+    if (code == null || code.length() < 9 || !code.startsWith("Q") || code.contains("ENTITY")) {
+      return null;
+    }
+    return new StringBuilder(9).append(code, 0, 5).append(code.charAt(8)).append(code, 5, 8)
+        .toString();
+  }
+
+  private static class KeyedBean {
+
+    private final String key;
+    private final IBarcodeBean bean;
+
+    KeyedBean(String key, IBarcodeBean bean) {
+      this.key = key;
+      this.bean = bean;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package life.qbic.portal.portlet.util;
+
+import life.qbic.portal.portlet.model.BarcodeSample;
+
+/**
+ * Computes one info field of barcodes and sample sheets, resolved once from the option selected
+ * by the user, see {@link SampleToBarcodeFieldTranslator#compileInfo(Object, boolean)}
+ */
+@FunctionalInterface
+public interface FieldExtractor {
+
+  /**
+   * @param s sample the field is computed for
+   * @param parents codes of the parent samples, separated by spaces, may be null
+   * @return the field, empty if it is not set for the sample
+   */
+  String extract(BarcodeSample s, String parents);
+}
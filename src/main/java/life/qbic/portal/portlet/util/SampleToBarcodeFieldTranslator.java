@@ -15,14 +15,17 @@
  *******************************************************************************/
 package life.qbic.portal.portlet.util;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import java.util.stream.IntStream;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
+import life.qbic.datamodel.samples.SampleType;
+import life.qbic.portal.portlet.model.BarcodeSample;
 import life.qbic.portal.portlet.model.IBarcodeOptions;
 import life.qbic.portal.portlet.model.QRInfoOptions;
 import life.qbic.portal.portlet.model.SheetInfoOptions;
@@ -32,78 +35,101 @@ import com.vaadin.ui.ComboBox;
 public class SampleToBarcodeFieldTranslator {
 
   private static final Logger LOG = LogManager.getLogger(SampleToBarcodeFieldTranslator.class);
+  private static final FieldExtractor EMPTY = (s, parents) -> "";
+  // selections of at least this many samples are translated in parallel
+  static final int PARALLEL_THRESHOLD = 2000;
   private final int HEADER_MAX_LENTH = 15; // cutoff value of the ID line printed on tube barcode
                                            // stickers
   private final int INFO_MAX_LENGTH = 21; // cutoff value of the two description lines printed on
                                           // tube barcode stickers
-  private Map<Pair<String, String>, Property> experimentalFactorsForLabelsAndSamples;
-  private Map<String, List<Property>> propsForSamples;
+  // mapping between sample type and interesting property of that sample type has to be added here
+  private static final Map<SampleType, String> sampleTypeToBioTypeField = new HashMap<>();
+
+  static {
+    sampleTypeToBioTypeField.put(SampleType.Q_BIOLOGICAL_ENTITY, "Q_NCBI_ORGANISM");
+    sampleTypeToBioTypeField.put(SampleType.Q_BIOLOGICAL_SAMPLE, "Q_PRIMARY_TISSUE");
+    sampleTypeToBioTypeField.put(SampleType.Q_TEST_SAMPLE, "Q_SAMPLE_TYPE");
+    sampleTypeToBioTypeField.put(SampleType.Q_NGS_SINGLE_SAMPLE_RUN, "");
+    sampleTypeToBioTypeField.put(SampleType.Q_MHC_LIGAND_EXTRACT, "Q_MHC_CLASS");
+    sampleTypeToBioTypeField.put(SampleType.Q_MS_RUN, "");
+    sampleTypeToBioTypeField.put(SampleType.Q_BMI_GENERIC_IMAGING_RUN, "");
+  }
+
+  // design property label -> sample code -> formatted value
+  private Map<String, Map<String, DesignValue>> designIndex = new HashMap<>();
   private Map<String, String> sampleCodeToSpecies;
 
-  public String buildInfo(ComboBox select, Sample s, String parents, boolean cut) {
-    Map<String, String> map = s.getProperties();
-    IBarcodeOptions option = null;
-    if (select.getValue() != null) {
-      String val = select.getValue().toString();
-      option = QRInfoOptions.fromString(val);
-      if (option == null) {
-        option = SheetInfoOptions.fromString(val);
-      }
-      // if selected option was not found, it is either an experimental factor or other property
-      // stored in the experimental design xml
-      if (option == null) {
-        String code = s.getCode();
-        Property designProp =
-            experimentalFactorsForLabelsAndSamples.get(new ImmutablePair<>(val, code));
-        if (designProp != null) {
-          return expDesignPropToString(designProp, cut);
-        }
-        // try to find other property
-        if (propsForSamples.containsKey(code)) {
-          for (Property prop : propsForSamples.get(code)) {
-            if (prop.getLabel().equals(val)) {
-              return expDesignPropToString(prop, cut);
-            }
-          }
-        }
-        // selected property not set for this sample, return empty string
-        return "";
-      }
-    }
+  // fields of the standard options, options of sample sheets with the same name as a tube label
+  // option are resolved to the tube label option
+  private final Map<IBarcodeOptions, FieldExtractor> fields = new HashMap<>();
 
-    Map<IBarcodeOptions, String> translator = new HashMap<IBarcodeOptions, String>() {
-      /**
-       * 
-       */
-      private static final long serialVersionUID = -5308120857192708672L;
-
-      {
-        put(QRInfoOptions.Extract_Material, getMaterial(map));
-        put(QRInfoOptions.Species, sampleCodeToSpecies.get(s.getCode()));
-        put(QRInfoOptions.MHC_Type, map.get("Q_MHC_CLASS"));
-        put(QRInfoOptions.Antibody, map.get("Q_ANTIBODY"));
-        put(SheetInfoOptions.Parent_Samples, parents);
-        put(QRInfoOptions.Secondary_Name, map.get("Q_SECONDARY_NAME"));
-        put(QRInfoOptions.QBIC_Code, s.getCode());
-        put(QRInfoOptions.Lab_ID, map.get("Q_EXTERNALDB_ID"));
-      }
+  public SampleToBarcodeFieldTranslator() {
+    fields.put(QRInfoOptions.Extract_Material, (s, parents) -> getMaterial(s));
+    fields.put(QRInfoOptions.Species, (s, parents) -> sampleCodeToSpecies.get(s.getCode()));
+    fields.put(QRInfoOptions.MHC_Type, (s, parents) -> s.getProperty("Q_MHC_CLASS"));
+    fields.put(QRInfoOptions.Antibody, (s, parents) -> s.getProperty("Q_ANTIBODY"));
+    fields.put(SheetInfoOptions.Parent_Samples, (s, parents) -> parents);
+    fields.put(QRInfoOptions.Secondary_Name, (s, parents) -> s.getProperty("Q_SECONDARY_NAME"));
+    fields.put(QRInfoOptions.QBIC_Code, (s, parents) -> s.getCode());
+    fields.put(QRInfoOptions.Lab_ID, (s, parents) -> s.getProperty("Q_EXTERNALDB_ID"));
+  }
 
-      private String getMaterial(Map<String, String> map) {
-        if (map.containsKey("Q_PRIMARY_TISSUE"))
-          return map.get("Q_PRIMARY_TISSUE");
-        else if (map.containsKey("Q_MHC_CLASS"))
-          return map.get("Q_MHC_CLASS");
-        else
-          return map.get("Q_SAMPLE_TYPE");
-      }
+  public String buildInfo(ComboBox select, BarcodeSample s, String parents, boolean cut) {
+    return compileInfo(select.getValue(), cut).extract(s, parents);
+  }
+
+  /**
+   * Resolves a selected info option to the extractor of its field. Jobs resolve their options
+   * once and apply the extractors to all of their samples.
+   *
+   * @param selected the option selected by the user, a standard option or the label of a property
+   *        of the experimental design, may be null
+   * @param cut true if the field is cut to fit onto a tube label
+   * @return extractor of the field
+   */
+  public FieldExtractor compileInfo(Object selected, boolean cut) {
+    if (selected == null) {
+      return EMPTY;
+    }
+    String val = selected.toString();
+    IBarcodeOptions option = QRInfoOptions.fromString(val);
+    if (option == null) {
+      option = SheetInfoOptions.fromString(val);
+    }
+    // if selected option was not found, it is either an experimental factor or other property
+    // stored in the experimental design xml
+    if (option == null) {
+      Map<String, DesignValue> valuesForSamples =
+          designIndex.getOrDefault(val, Collections.emptyMap());
+      return (s, parents) -> {
+        DesignValue value = valuesForSamples.get(s.getCode());
+        // selected property not set for this sample, return empty string
+        if (value == null)
+          return "";
+        return cut ? value.cut : value.full;
+      };
+    }
+    FieldExtractor field = fields.get(option);
+    if (field == null) {
+      return EMPTY;
+    }
+    return (s, parents) -> {
+      String res = field.extract(s, parents);
+      if (res == null)
+        return "";
+      if (cut)
+        res = cutInfoToMaxSize(res);
+      return res;
     };
+  }
 
-    String res = translator.get(option);
-    if (res == null)
-      return "";
-    if (cut)
-      res = cutInfoToMaxSize(res);
-    return res;
+  private String getMaterial(BarcodeSample s) {
+    String material = s.getProperty("Q_PRIMARY_TISSUE");
+    if (material == null)
+      material = s.getProperty("Q_MHC_CLASS");
+    if (material == null)
+      material = s.getProperty("Q_SAMPLE_TYPE");
+    return material;
   }
 
   private String cutInfoToMaxSize(String info) {
@@ -130,25 +156,99 @@ public class SampleToBarcodeFieldTranslator {
     return res;
   }
 
-  public String getCodeString(Sample sample, String codedName) {
-    Map<String, String> map = sample.getProperties();
-    String res = "";
-    String s = codedName;
-    if (!res.isEmpty())
-      res += "_";
-    switch (s) {
+  public String getCodeString(BarcodeSample sample, String codedName) {
+    return compileCode(codedName).extract(sample, null);
+  }
+
+  /**
+   * Resolves the selected name of the ID line of tube labels to the extractor of its field
+   *
+   * @param codedName the selected name, "QBiC ID", "Secondary Name" or "Lab ID"
+   * @return extractor of the ID line, cut to fit onto a tube label
+   */
+  public FieldExtractor compileCode(String codedName) {
+    FieldExtractor field;
+    switch (codedName) {
       case "QBiC ID":
-        res += sample.getCode();
+        field = (s, parents) -> s.getCode();
         break;
       case "Secondary Name":
-        res += map.get("Q_SECONDARY_NAME");
+        field = (s, parents) -> s.getProperty("Q_SECONDARY_NAME");
         break;
       case "Lab ID":
-        res += map.get("Q_EXTERNALDB_ID");
+        field = (s, parents) -> s.getProperty("Q_EXTERNALDB_ID");
         break;
+      default:
+        field = EMPTY;
+    }
+    return (s, parents) -> {
+      String res = fixFileName(String.valueOf(field.extract(s, parents)));
+      return res.substring(0, Math.min(res.length(), HEADER_MAX_LENTH));
+    };
+  }
+
+  /**
+   * Translates samples into the fields of their barcodes in one pass. Large selections are
+   * translated in parallel.
+   *
+   * @param samples samples to translate
+   * @param fields extractors of the options chosen for this job
+   * @return the fields of all samples, by the index of the sample
+   */
+  public TranslatedFields translate(List<BarcodeSample> samples, JobFields fields) {
+    TranslatedFields res = new TranslatedFields(samples.size());
+    IntStream indices = IntStream.range(0, samples.size());
+    if (samples.size() >= PARALLEL_THRESHOLD) {
+      indices = indices.parallel();
     }
-    res = fixFileName(res);
-    return res.substring(0, Math.min(res.length(), HEADER_MAX_LENTH));
+    indices.forEach(i -> {
+      BarcodeSample s = samples.get(i);
+      String parents = StringUtils.join(s.getParentCodes(), " ");
+      res.codedStrings[i] = fields.code.extract(s, parents);
+      res.info1[i] = fields.info1.extract(s, parents);
+      res.info2[i] = fields.info2.extract(s, parents);
+      res.bioTypes[i] = getBioType(s);
+    });
+    return res;
+  }
+
+  /**
+   * @return the type of material or run of a sample, as printed on its barcode
+   */
+  public String getBioType(BarcodeSample s) {
+    SampleType type = parseSampleType(s);
+    String bioType = "unknown";
+    if (sampleTypeToBioTypeField.containsKey(type)) {
+      String typeValue = s.getProperty(sampleTypeToBioTypeField.get(type));
+      if (typeValue != null) {
+        bioType = typeValue;
+        if (type.equals(SampleType.Q_BIOLOGICAL_ENTITY)) {
+          bioType = sampleCodeToSpecies.get(s.getCode());
+        }
+      } else {
+        switch (type) {
+          case Q_MS_RUN:
+            bioType = "NGS RUN";
+            break;
+          case Q_BMI_GENERIC_IMAGING_RUN:
+            bioType = "Imaging RUN";
+            break;
+          default:
+        }
+      }
+    }
+    return bioType;
+  }
+
+  private SampleType parseSampleType(BarcodeSample s) {
+    SampleType type = null;
+    try {
+      type = SampleType.valueOf(s.getSampleTypeCode());
+    } catch (IllegalArgumentException e) {
+      LOG.warn(s.getSampleTypeCode()
+          + " does not seem to be a supported sample type. Consider adding it to the data model library enums.");
+    }
+    return type;
   }
 
   private String fixFileName(String res) {
@@ -161,14 +261,92 @@ public class SampleToBarcodeFieldTranslator {
     return res;
   }
 
+  /**
+   * Indexes the values of the experimental design by property label and sample code, formatted
+   * for sheets and for cut tube labels. Experimental factors take precedence over other properties
+   * with the same label.
+   */
   public void setDesignProperties(
       Map<Pair<String, String>, Property> experimentalFactorsForLabelsAndSamples,
       Map<String, List<Property>> propsForSamples) {
-    this.experimentalFactorsForLabelsAndSamples = experimentalFactorsForLabelsAndSamples;
-    this.propsForSamples = propsForSamples;
+    Map<String, Map<String, DesignValue>> index = new HashMap<>();
+    for (Map.Entry<String, List<Property>> entry : propsForSamples.entrySet()) {
+      for (Property prop : entry.getValue()) {
+        index.computeIfAbsent(prop.getLabel(), l -> new HashMap<>()).putIfAbsent(entry.getKey(),
+            new DesignValue(prop));
+      }
+    }
+    for (Map.Entry<Pair<String, String>, Property> entry : experimentalFactorsForLabelsAndSamples
+        .entrySet()) {
+      index.computeIfAbsent(entry.getKey().getLeft(), l -> new HashMap<>())
+          .put(entry.getKey().getRight(), new DesignValue(entry.getValue()));
+    }
+    this.designIndex = index;
   }
 
   public void setSampleCodeToSpecies(Map<String, String> sampleCodeToSpecies) {
     this.sampleCodeToSpecies = sampleCodeToSpecies;
   }
+
+  /**
+   * Extractors of the ID line and the two info fields, resolved once from the options chosen for
+   * a job
+   */
+  public static class JobFields {
+
+    private final FieldExtractor code;
+    private final FieldExtractor info1;
+    private final FieldExtractor info2;
+
+    public JobFields(FieldExtractor code, FieldExtractor info1, FieldExtractor info2) {
+      this.code = code;
+      this.info1 = info1;
+      this.info2 = info2;
+    }
+  }
+
+  /**
+   * Barcode fields of a list of samples, stored by column
+   */
+  public static class TranslatedFields {
+
+    private final String[] codedStrings;
+    private final String[] info1;
+    private final String[] info2;
+    private final String[] bioTypes;
+
+    TranslatedFields(int size) {
+      codedStrings = new String[size];
+      info1 = new String[size];
+      info2 = new String[size];
+      bioTypes = new String[size];
+    }
+
+    public String getCodedString(int i) {
+      return codedStrings[i];
+    }
+
+    public String getInfo1(int i) {
+      return info1[i];
+    }
+
+    public String getInfo2(int i) {
+      return info2[i];
+    }
+
+    public String getBioType(int i) {
+      return bioTypes[i];
+    }
+  }
+
+  private class DesignValue {
+
+    private final String full;
+    private final String cut;
+
+    DesignValue(Property prop) {
+      this.full = expDesignPropToString(prop, false);
+      this.cut = expDesignPropToString(prop, true);
+    }
+  }
 }
@@ -0,0 +1,125 @@
+package life.qbic.portal.portlet.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Thread-safe read-through cache whose entries expire a fixed time after they were loaded. Keys
+ * the loader did not return a value for are cached as missing as well, so unknown keys do not
+ * cause a lookup on every request. Expired entries are removed while loading, at most once per
+ * time to live, so keys that are not requested again do not stay in memory.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class TTLCache<K, V> {
+
+  private final long ttlNanos;
+  private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final AtomicLong nextPurge;
+
+  public TTLCache(long ttl, TimeUnit unit) {
+    this.ttlNanos = unit.toNanos(ttl);
+    this.nextPurge = new AtomicLong(System.nanoTime() + ttlNanos);
+  }
+
+  /**
+   * Returns the cached values for the given keys. All keys that are not cached or expired are
+   * loaded together with one call of the loader.
+   *
+   * @param keys keys to look up
+   * @param loader loads the values of a collection of keys, may return null if loading failed, in
+   *        which case nothing is cached
+   * @return map of all keys that have a value
+   */
+  public Map<K, V> getAll(Collection<K> keys, Function<Collection<K>, Map<K, V>> loader) {
+    Map<K, V> res = new HashMap<>();
+    List<K> missing = new ArrayList<>();
+    long now = System.nanoTime();
+    for (K key : keys) {
+      Entry<V> entry = entries.get(key);
+      if (entry == null || entry.isExpired(now)) {
+        missing.add(key);
+      } else if (entry.value != null) {
+        res.put(key, entry.value);
+      }
+    }
+    if (!missing.isEmpty()) {
+      purgeExpired(now);
+      Map<K, V> loaded = loader.apply(missing);
+      if (loaded != null) {
+        long expiry = System.nanoTime() + ttlNanos;
+        for (K key : missing) {
+          V value = loaded.get(key);
+          entries.put(key, new Entry<>(value, expiry));
+          if (value != null) {
+            res.put(key, value);
+          }
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Returns the cached value for a key, loading it if it is not cached or expired.
+   *
+   * @param key key to look up
+   * @param loader loads the value of a single key, may return null
+   * @return the value or null if there is none
+   */
+  public V get(K key, Function<K, V> loader) {
+    long now = System.nanoTime();
+    Entry<V> entry = entries.get(key);
+    if (entry == null || entry.isExpired(now)) {
+      purgeExpired(now);
+      entry = new Entry<>(loader.apply(key), System.nanoTime() + ttlNanos);
+      entries.put(key, entry);
+    }
+    return entry.value;
+  }
+
+  public void invalidate(K key) {
+    entries.remove(key);
+  }
+
+  public void invalidateAll() {
+    entries.clear();
+  }
+
+  /**
+   * @return number of cached entries, including expired ones that were not removed yet
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private void purgeExpired(long now) {
+    long next = nextPurge.get();
+    if (now - next >= 0 && nextPurge.compareAndSet(next, now + ttlNanos)) {
+      entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+  }
+
+  private static class Entry<V> {
+
+    private final V value;
+    private final long expiry;
+
+    Entry(V value, long expiry) {
+      this.value = value;
+      this.expiry = expiry;
+    }
+
+    boolean isExpired(long now) {
+      return now - expiry >= 0;
+    }
+  }
+}
@@ -18,7 +18,7 @@ package life.qbic.portal.portlet.view;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
+import life.qbic.portal.portlet.model.BarcodeSample;
 
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
@@ -34,6 +34,7 @@ import com.vaadin.ui.themes.ValoTheme;
 
 import life.qbic.portal.Styles;
 import life.qbic.portal.portlet.model.QRInfoOptions;
+import life.qbic.portal.portlet.util.FieldExtractor;
 import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -57,7 +58,7 @@ public class BarcodePreviewComponent extends VerticalLayout {
   // private CheckBox overwrite;
   // private TextField codedNameField;
 
-  Sample example;
+  BarcodeSample example;
   SampleToBarcodeFieldTranslator translator;
 
   public BarcodePreviewComponent(SampleToBarcodeFieldTranslator translator) {
@@ -179,7 +180,7 @@ public class BarcodePreviewComponent extends VerticalLayout {
     info2.setReadOnly(b);
   }
 
-  public void setExample(Sample sample) {
+  public void setExample(BarcodeSample sample) {
     example = sample;
     refresh();
   }
@@ -193,19 +194,37 @@ public class BarcodePreviewComponent extends VerticalLayout {
     setFieldsReadOnly(true);
   }
 
-  public String getCodeString(Sample s) {
+  public String getCodeString(BarcodeSample s) {
     return translator.getCodeString(s, (String) codedName.getValue());
   }
 
-  public String getInfo(ComboBox b, Sample s) {
+  public String getInfo(ComboBox b, BarcodeSample s) {
     return translator.buildInfo(b, s, null, true);
   }
 
-  public String getInfo1(Sample s) {
+  public String getInfo1(BarcodeSample s) {
     return getInfo(select1, s);
   }
 
-  public String getInfo2(Sample s) {
+  public String getInfo2(BarcodeSample s) {
     return getInfo(select2, s);
   }
+
+  public FieldExtractor compileCode() {
+    return translator.compileCode((String) codedName.getValue());
+  }
+
+  public FieldExtractor compileInfo1() {
+    return compileInfo(select1);
+  }
+
+  public FieldExtractor compileInfo2() {
+    return compileInfo(select2);
+  }
+
+  // parents are not printed on tube labels
+  private FieldExtractor compileInfo(ComboBox b) {
+    FieldExtractor field = translator.compileInfo(b.getValue(), true);
+    return (s, parents) -> field.extract(s, null);
+  }
 }
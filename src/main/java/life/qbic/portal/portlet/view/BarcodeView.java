@@ -24,6 +24,8 @@ import life.qbic.portal.portlet.control.BarcodeController;
 import life.qbic.portal.portlet.control.SampleFilterDecorator;
 import life.qbic.portal.portlet.control.SampleFilterGenerator;
 import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator;
+import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator.JobFields;
+import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator.TranslatedFields;
 import life.qbic.xml.properties.Property;
 import life.qbic.portal.portlet.model.ExperimentBarcodeSummary;
 import life.qbic.portal.portlet.model.SortBy;
@@ -31,7 +33,7 @@ import org.tepi.filtertable.FilterTable;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
+import life.qbic.portal.portlet.model.BarcodeSample;
 import com.vaadin.shared.ui.combobox.FilteringMode;
 import com.vaadin.ui.themes.ValoTheme;
 
@@ -47,12 +49,16 @@ public class BarcodeView extends HorizontalLayout {
    *
    */
   private static final long serialVersionUID = 5688919972212199869L;
+  // tables show at most this many rows at once and scroll the rest
+  private static final int MAX_EXPERIMENT_ROWS = 15;
+  private static final int MAX_SAMPLE_ROWS = 25;
   private ComboBox spaceBox;
   private ComboBox projectBox;
   private Table experimentTable;
   private OptionGroup sortby;
-  private Map<Object, ExperimentBarcodeSummary> experiments;
-  private Map<Object, Sample> samples;
+  private RowContainer<ExperimentBarcodeSummary> experiments;
+  private RowContainer<BarcodeSample> samples;
+  private Map<BarcodeSample, String> sampleTypes = new HashMap<>();
 
   private Component tabsTab;
   private TabSheet tabs;
@@ -68,6 +74,7 @@ public class BarcodeView extends HorizontalLayout {
   private FilterTable sampleTable;
 
   private ProgressBar bar;
+  private ProgressBar projectLoading;
   private Label info;
   private Button download;
   private Map<String, Printer> printerMap;
@@ -114,6 +121,12 @@ public class BarcodeView extends HorizontalLayout {
     left.addComponent(
         Styles.questionize(projectBox, "QBiC project code and project name", "Sub-Project"));
 
+    projectLoading = new ProgressBar();
+    projectLoading.setIndeterminate(true);
+    projectLoading.setCaption("Loading sub-project...");
+    projectLoading.setVisible(false);
+    left.addComponent(projectLoading);
+
     initExperimentTable();
     left.addComponent(Styles.questionize(experimentTable,
         "This table gives an overview of tissue samples and extracted materials"
@@ -179,10 +192,12 @@ public class BarcodeView extends HorizontalLayout {
     experimentTable.setPageLength(1);
     experimentTable.setSelectable(true);
     experimentTable.setMultiSelect(true);
-    experimentTable.addContainerProperty("Samples", String.class, null);
-    experimentTable.addContainerProperty("Type", String.class, null);
-    experimentTable.addContainerProperty("Date", String.class, null);
-    experimentTable.addContainerProperty("Experiment", String.class, null);
+    experiments = new RowContainer<ExperimentBarcodeSummary>()
+        .addColumn("Samples", ExperimentBarcodeSummary::getAmount)
+        .addColumn("Type", ExperimentBarcodeSummary::getBio_Type)
+        .addColumn("Date", ExperimentBarcodeSummary::getDate)
+        .addColumn("Experiment", ExperimentBarcodeSummary::getExperiment);
+    experimentTable.setContainerDataSource(experiments);
   }
 
   private void initSampleTable(SampleFilterGenerator gen) {
@@ -191,10 +206,13 @@ public class BarcodeView extends HorizontalLayout {
     sampleTable.setPageLength(1);
     sampleTable.setSelectable(true);
     sampleTable.setMultiSelect(true);
-    sampleTable.addContainerProperty("QBiC Code", String.class, null);
-    sampleTable.addContainerProperty("Secondary Name", String.class, null);
-    sampleTable.addContainerProperty("Lab ID", String.class, null);
-    sampleTable.addContainerProperty("Type", String.class, null);
+    // indexed, so the filter bar stays fast on large projects
+    samples = new RowContainer<BarcodeSample>()
+        .addIndexedColumn("QBiC Code", BarcodeSample::getCode)
+        .addIndexedColumn("Secondary Name", s -> s.getProperty("Q_SECONDARY_NAME"))
+        .addIndexedColumn("Lab ID", s -> s.getProperty("Q_EXTERNALDB_ID"))
+        .addIndexedColumn("Type", s -> getType(s, sampleTypes));
+    sampleTable.setContainerDataSource(samples);
     sampleTable.setColumnWidth("Lab ID", 120);
     sampleTable.setColumnWidth("Type", 130);
     sampleTable.setFilterDecorator(new SampleFilterDecorator());
@@ -227,14 +245,23 @@ public class BarcodeView extends HorizontalLayout {
 
   public void resetExperiments() {
     experimentTable.setPageLength(1);
-    experimentTable.removeAllItems();
+    setRows(experimentTable, experiments, Collections.emptyList());
     tabsTab.setVisible(false);
     resetSamples();
   }
 
+  /**
+   * Shows or hides the indicator that the selected sub-project is being loaded. The experiment
+   * table can not be used while loading.
+   */
+  public void setProjectLoading(boolean loading) {
+    projectLoading.setVisible(loading);
+    experimentTable.setEnabled(!loading);
+  }
+
   public void resetSamples() {
     sampleTable.setPageLength(1);
-    sampleTable.removeAllItems();
+    setRows(sampleTable, samples, Collections.emptyList());
     sampleTable.setVisible(false);
   }
 
@@ -275,41 +302,43 @@ public class BarcodeView extends HorizontalLayout {
   }
 
   public void setExperiments(Collection<ExperimentBarcodeSummary> collection) {
-    experiments = new HashMap<>();
-    int i = 0;
-    for (ExperimentBarcodeSummary s : collection) {
-      i++;
-      List<Object> row = new ArrayList<>();
-      row.add(s.getAmount());
-      row.add(s.getBio_Type());
-      row.add(s.getDate());
-      row.add(s.getExperiment());
-      experiments.put(i, s);
-      experimentTable.addItem(row.toArray(new Object[row.size()]), i);
-    }
-    experimentTable.setPageLength(collection.size());
-  }
-
-  public void setSamples(List<Sample> sampleList, Map<Sample, String> types) {
-    samples = new HashMap<>();
-    int i = 0;
-    for (Sample s : sampleList) {
-      i++;
-      List<Object> row = new ArrayList<>();
-      Map<String, String> props = s.getProperties();
-      row.add(s.getCode());
-      row.add(props.get("Q_SECONDARY_NAME"));
-      row.add(props.get("Q_EXTERNALDB_ID"));
-      row.add(getType(s, types));
-      samples.put(i, s);
-      sampleTable.addItem(row.toArray(new Object[row.size()]), i);
-      sampleTable.select(i);
+    setRows(experimentTable, experiments, new ArrayList<>(collection));
+    experimentTable.setPageLength(pageLength(collection.size(), MAX_EXPERIMENT_ROWS));
+  }
+
+  /**
+   * Shows samples in the sample table and selects all of them
+   *
+   * @param sampleList samples to show
+   * @param types bio types of the samples by the experiment summaries they belong to
+   */
+  public void setSamples(List<BarcodeSample> sampleList, Map<BarcodeSample, String> types) {
+    sampleTypes = types;
+    setRows(sampleTable, samples, sampleList);
+    Set<Integer> all = new HashSet<>();
+    for (int i = 0; i < sampleList.size(); i++) {
+      all.add(i);
     }
-    sampleTable.setPageLength(sampleList.size());
+    sampleTable.setValue(all);
+    sampleTable.setPageLength(pageLength(sampleList.size(), MAX_SAMPLE_ROWS));
     sampleTable.setVisible(!sampleList.isEmpty());
   }
 
-  private String getType(Sample s, Map<Sample, String> types) {
+  /**
+   * Replaces the rows of a table. Row ids are row indices and are reused by the new rows, so the
+   * selection is cleared first instead of selecting new rows at the old indices.
+   */
+  static <T> void setRows(AbstractSelect table, RowContainer<T> container, List<T> rows) {
+    table.setValue(null);
+    container.setRows(rows);
+  }
+
+  // a page length of 0 would show all rows
+  private static int pageLength(int rows, int maxRows) {
+    return Math.max(1, Math.min(rows, maxRows));
+  }
+
+  private String getType(BarcodeSample s, Map<BarcodeSample, String> types) {
     Map<String, String> props = s.getProperties();
     String type = s.getSampleTypeCode();
     String bioType = null;
@@ -336,16 +365,18 @@ public class BarcodeView extends HorizontalLayout {
   public Collection<ExperimentBarcodeSummary> getSelectedExperiments() {
     List<ExperimentBarcodeSummary> res = new ArrayList<ExperimentBarcodeSummary>();
     for (Object id : (Collection<Object>) experimentTable.getValue()) {
-      res.add(experiments.get(id));
+      if (experimentTable.containsId(id)) {
+        res.add(experiments.getRow(id));
+      }
     }
     return res;
   }
 
-  public List<Sample> getSelectedSamples() {
-    List<Sample> res = new ArrayList<Sample>();
+  public List<BarcodeSample> getSelectedSamples() {
+    List<BarcodeSample> res = new ArrayList<BarcodeSample>();
     for (Object id : (Collection<Object>) sampleTable.getValue()) {
       if (sampleTable.containsId(id)) {
-        res.add(samples.get(id));
+        res.add(samples.getRow(id));
       }
     }
     return res;
@@ -407,7 +438,7 @@ public class BarcodeView extends HorizontalLayout {
     printTubeCodes.setVisible(false);
   }
 
-  public void enableTubeLabelPreview(Sample sample) {
+  public void enableTubeLabelPreview(BarcodeSample sample) {
     tubePreview.setExample(sample);
     tubePreview.setVisible(true);
     boolean printAvailable = printerSelection.size() > 0;
@@ -415,25 +446,19 @@ public class BarcodeView extends HorizontalLayout {
     printTubeCodes.setVisible(printAvailable);
   }
 
-  public String getCodedString(Sample s) {
-    if (tabs.getSelectedTab() instanceof BarcodePreviewComponent)
-      return tubePreview.getCodeString(s);
-    else
-      return s.getCode();
-  }
-
-  public String getInfo1(Sample s, String parents) {
-    if (tabs.getSelectedTab() instanceof BarcodePreviewComponent)
-      return tubePreview.getInfo1(s);
-    else
-      return sheetPreview.getInfo1(s, parents);
-  }
-
-  public String getInfo2(Sample s, String parents) {
+  /**
+   * Translates samples into the fields of their barcodes, using the options of the selected label
+   * or sheet design
+   */
+  public TranslatedFields translate(List<BarcodeSample> samples) {
+    JobFields fields;
     if (tabs.getSelectedTab() instanceof BarcodePreviewComponent)
-      return tubePreview.getInfo2(s);
+      fields = new JobFields(tubePreview.compileCode(), tubePreview.compileInfo1(),
+          tubePreview.compileInfo2());
     else
-      return sheetPreview.getInfo2(s, parents);
+      fields = new JobFields((s, parents) -> s.getCode(), sheetPreview.compileInfo1(),
+          sheetPreview.compileInfo2());
+    return translator.translate(samples, fields);
   }
 
   public TabSheet getTabs() {
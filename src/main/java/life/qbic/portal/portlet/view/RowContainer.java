@@ -0,0 +1,308 @@
+package life.qbic.portal.portlet.view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.AbstractInMemoryContainer;
+import com.vaadin.data.util.ListSet;
+import com.vaadin.data.util.ObjectProperty;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+import com.vaadin.data.util.filter.UnsupportedFilterException;
+
+/**
+ * Read-only table container over a list of rows. Item ids are the indices of the rows. Cells are
+ * computed from their row when a table renders or filters them, so setting thousands of rows does
+ * not create thousands of items up front.
+ *
+ * Indexed columns keep the rows containing each trigram of their lower-cased values. Text filters
+ * on them only check the rows containing all trigrams of the filter text, instead of all rows.
+ *
+ * @param <T> type of the rows
+ */
+public class RowContainer<T> extends AbstractInMemoryContainer<Integer, String, Item>
+    implements Container.Filterable, Container.Sortable {
+
+  private static final long serialVersionUID = -2186514466104398121L;
+
+  private static final int GRAM_LENGTH = 3;
+
+  private final Map<String, Function<T, String>> columns = new LinkedHashMap<>();
+  private final Set<String> indexedColumns = new LinkedHashSet<>();
+  private List<T> rows = Collections.emptyList();
+  // indexed column -> trigram -> rows with a value containing it, ascending
+  private Map<String, Map<String, int[]>> trigrams = Collections.emptyMap();
+
+  /**
+   * Adds a column, columns are shown in the order they are added
+   *
+   * @param propertyId caption of the column
+   * @param cell computes the value of a row in this column
+   */
+  public RowContainer<T> addColumn(String propertyId, Function<T, String> cell) {
+    columns.put(propertyId, cell);
+    return this;
+  }
+
+  /**
+   * Adds a column that is indexed for text filters, see {@link #addColumn(String, Function)}
+   */
+  public RowContainer<T> addIndexedColumn(String propertyId, Function<T, String> cell) {
+    indexedColumns.add(propertyId);
+    return addColumn(propertyId, cell);
+  }
+
+  /**
+   * Replaces all rows of the container and indexes them. Filters stay in place.
+   */
+  public void setRows(List<T> rows) {
+    internalRemoveAllItems();
+    this.rows = new ArrayList<>(rows);
+    this.trigrams = buildIndex();
+    List<Integer> ids = new ArrayList<>(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      ids.add(i);
+    }
+    setAllItemIds(ids);
+    filterAll();
+    fireItemSetChange();
+  }
+
+  /**
+   * @param itemId id of an item of this container
+   * @return the row of the item, null if there is none
+   */
+  public T getRow(Object itemId) {
+    if (itemId instanceof Integer) {
+      int index = (Integer) itemId;
+      if (index >= 0 && index < rows.size()) {
+        return rows.get(index);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return all rows, including the ones hidden by filters
+   */
+  public List<T> getRows() {
+    return Collections.unmodifiableList(rows);
+  }
+
+  private Map<String, Map<String, int[]>> buildIndex() {
+    Map<String, Map<String, int[]>> index = new HashMap<>();
+    for (String column : indexedColumns) {
+      Function<T, String> cell = columns.get(column);
+      Map<String, Postings> postings = new HashMap<>();
+      for (int row = 0; row < rows.size(); row++) {
+        String value = cell.apply(rows.get(row));
+        if (value == null) {
+          continue;
+        }
+        value = value.toLowerCase();
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+          postings.computeIfAbsent(value.substring(i, i + GRAM_LENGTH), g -> new Postings())
+              .add(row);
+        }
+      }
+      Map<String, int[]> columnIndex = new HashMap<>(postings.size() * 2);
+      for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+        columnIndex.put(entry.getKey(), entry.getValue().toArray());
+      }
+      index.put(column, columnIndex);
+    }
+    return index;
+  }
+
+  /**
+   * Only checks the filters against rows that the index finds for text filters on indexed
+   * columns. Without such filters all rows are checked.
+   */
+  @Override
+  protected boolean doFilterContainer(boolean hasFilters) {
+    BitSet candidates = hasFilters ? getIndexedCandidates() : null;
+    if (candidates == null) {
+      return super.doFilterContainer(hasFilters);
+    }
+    List<Integer> before = getFilteredItemIds();
+    List<Integer> filtered = new ListSet<>();
+    // all item ids are iterated to keep their (sorted) order
+    for (Integer id : getAllItemIds()) {
+      if (candidates.get(id) && passesFilters(id)) {
+        filtered.add(id);
+      }
+    }
+    setFilteredItemIds(filtered);
+    return before == null || !before.equals(filtered);
+  }
+
+  /**
+   * @return rows that may pass the text filters on indexed columns, null if no filter can be
+   *         answered by the index
+   */
+  private BitSet getIndexedCandidates() {
+    BitSet candidates = null;
+    for (Filter filter : getFilters()) {
+      if (!(filter instanceof SimpleStringFilter)) {
+        continue;
+      }
+      SimpleStringFilter textFilter = (SimpleStringFilter) filter;
+      Map<String, int[]> columnIndex = trigrams.get(textFilter.getPropertyId());
+      String text = textFilter.getFilterString();
+      // shorter texts contain no trigram, their filters check all rows
+      if (columnIndex == null || text == null || text.length() < GRAM_LENGTH) {
+        continue;
+      }
+      BitSet matches = getRowsWithAllTrigrams(columnIndex, text.toLowerCase());
+      if (candidates == null) {
+        candidates = matches;
+      } else {
+        candidates.and(matches);
+      }
+    }
+    return candidates;
+  }
+
+  private BitSet getRowsWithAllTrigrams(Map<String, int[]> columnIndex, String text) {
+    BitSet res = null;
+    for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+      int[] rowsWithTrigram = columnIndex.get(text.substring(i, i + GRAM_LENGTH));
+      BitSet next = new BitSet(rows.size());
+      if (rowsWithTrigram != null) {
+        for (int row : rowsWithTrigram) {
+          next.set(row);
+        }
+      }
+      if (res == null) {
+        res = next;
+      } else {
+        res.and(next);
+      }
+      if (res.isEmpty()) {
+        break;
+      }
+    }
+    return res;
+  }
+
+  @Override
+  protected Item getUnfilteredItem(Object itemId) {
+    T row = getRow(itemId);
+    return row == null ? null : new RowItem(row);
+  }
+
+  @Override
+  public Collection<?> getContainerPropertyIds() {
+    return Collections.unmodifiableSet(columns.keySet());
+  }
+
+  @Override
+  public Property<?> getContainerProperty(Object itemId, Object propertyId) {
+    Item item = getItem(itemId);
+    return item == null ? null : item.getItemProperty(propertyId);
+  }
+
+  @Override
+  public Class<?> getType(Object propertyId) {
+    return String.class;
+  }
+
+  @Override
+  public void addContainerFilter(Filter filter) throws UnsupportedFilterException {
+    addFilter(filter);
+  }
+
+  @Override
+  public void removeContainerFilter(Filter filter) {
+    removeFilter(filter);
+  }
+
+  @Override
+  public void removeAllContainerFilters() {
+    removeAllFilters();
+  }
+
+  @Override
+  public Collection<Filter> getContainerFilters() {
+    return super.getContainerFilters();
+  }
+
+  @Override
+  public void sort(Object[] propertyId, boolean[] ascending) {
+    sortContainer(propertyId, ascending);
+  }
+
+  @Override
+  public Collection<?> getSortableContainerPropertyIds() {
+    return getSortablePropertyIds();
+  }
+
+  /**
+   * Ascending rows of one trigram, each row is added once
+   */
+  private static class Postings {
+
+    private int[] rows = new int[4];
+    private int size = 0;
+
+    void add(int row) {
+      if (size > 0 && rows[size - 1] == row) {
+        return;
+      }
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+      }
+      rows[size++] = row;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(rows, size);
+    }
+  }
+
+  /**
+   * Item computing its cells from its row
+   */
+  private class RowItem implements Item {
+
+    private static final long serialVersionUID = 4469151232734102634L;
+
+    private final T row;
+
+    RowItem(T row) {
+      this.row = row;
+    }
+
+    @Override
+    public Property<?> getItemProperty(Object id) {
+      Function<T, String> cell = columns.get(id);
+      return cell == null ? null : new ObjectProperty<>(cell.apply(row), String.class, true);
+    }
+
+    @Override
+    public Collection<?> getItemPropertyIds() {
+      return getContainerPropertyIds();
+    }
+
+    @Override
+    public boolean addItemProperty(Object id, @SuppressWarnings("rawtypes") Property property) {
+      throw new UnsupportedOperationException("Rows are read-only.");
+    }
+
+    @Override
+    public boolean removeItemProperty(Object id) {
+      throw new UnsupportedOperationException("Rows are read-only.");
+    }
+  }
+}
@@ -18,13 +18,14 @@ package life.qbic.portal.portlet.view;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
+import life.qbic.portal.portlet.model.BarcodeSample;
 import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.TextField;
 import com.vaadin.ui.VerticalLayout;
 import life.qbic.portal.Styles;
 import life.qbic.portal.portlet.model.QRInfoOptions;
 import life.qbic.portal.portlet.model.SheetInfoOptions;
+import life.qbic.portal.portlet.util.FieldExtractor;
 import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator;
 
 public class SheetOptionComponent extends VerticalLayout {
@@ -73,14 +74,22 @@ public class SheetOptionComponent extends VerticalLayout {
     secondOption.addItems(options);
   }
 
-  public String getInfo1(Sample s, String parents) {
+  public String getInfo1(BarcodeSample s, String parents) {
     return translator.buildInfo(firstOption, s, parents, false);
   }
 
-  public String getInfo2(Sample s, String parents) {
+  public String getInfo2(BarcodeSample s, String parents) {
     return translator.buildInfo(secondOption, s, parents, false);
   }
 
+  public FieldExtractor compileInfo1() {
+    return translator.compileInfo(firstOption.getValue(), false);
+  }
+
+  public FieldExtractor compileInfo2() {
+    return translator.compileInfo(secondOption.getValue(), false);
+  }
+
   public List<String> getHeaders() {
     return new ArrayList<>(
         Arrays.asList((String) firstOption.getValue(), (String) secondOption.getValue()));
@@ -0,0 +1,100 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the LaTeX sanitizing of barcode fields with the list-based implementation it replaced,
+ * on field values as found in labels of real projects (most of them contain no special
+ * characters). Not part of the normal test run, use {@code mvn test -P benchmarks}.
+ */
+public class BarcodeCreatorBenchmark {
+
+  private static final int FIELDS = 100000;
+  private static final int WARMUP_ROUNDS = 20;
+  private static final int ROUNDS = 50;
+
+  private static List<String> fields;
+
+  @BeforeClass
+  public static void setUp() {
+    fields = new ArrayList<>(FIELDS);
+    for (int i = 0; i < FIELDS; i++) {
+      switch (i % 10) {
+        case 0:
+          fields.add("Tumor " + i % 100 + "% of cells");
+          break;
+        case 1:
+          fields.add("Patient_" + i + " & Control");
+          break;
+        default:
+          fields.add(String.format("QABCD%03dAE Liver tissue %d", i % 1000, i));
+      }
+    }
+  }
+
+  @Test
+  public void escapeLatexCharacters() {
+    for (String field : fields) {
+      assertEquals(listBasedEscape(field), BarcodeCreator.escapeLatexCharacters(field));
+    }
+    run("list-based escape", BarcodeCreatorBenchmark::listBasedEscape);
+    run("escapeLatexCharacters", BarcodeCreator::escapeLatexCharacters);
+  }
+
+  @Test
+  public void removeLatexCharacters() {
+    for (String field : fields) {
+      assertEquals(listBasedRemove(field), BarcodeCreator.removeLatexCharacters(field));
+    }
+    run("list-based remove", BarcodeCreatorBenchmark::listBasedRemove);
+    run("removeLatexCharacters", BarcodeCreator::removeLatexCharacters);
+  }
+
+  private static void run(String name, UnaryOperator<String> sanitizer) {
+    int length = 0;
+    for (int r = 0; r < WARMUP_ROUNDS; r++) {
+      for (String field : fields) {
+        length += sanitizer.apply(field).length();
+      }
+    }
+    long start = System.nanoTime();
+    for (int r = 0; r < ROUNDS; r++) {
+      for (String field : fields) {
+        length += sanitizer.apply(field).length();
+      }
+    }
+    long nanos = System.nanoTime() - start;
+    // the summed length keeps the JIT from dropping the calls
+    System.out.printf("%-24s %7.1f ns/field (%d)%n", name, nanos / (double) (ROUNDS * FIELDS),
+        length);
+  }
+
+  private static String listBasedEscape(String input) {
+    List<Character> latexSpecialCharacters = new ArrayList<>(Arrays.asList('%', '&', '$'));
+    StringBuilder stringBuilder = new StringBuilder();
+    for (char c : input.toCharArray()) {
+      if (latexSpecialCharacters.contains(c))
+        stringBuilder.append('\\');
+      stringBuilder.append(c);
+    }
+    return stringBuilder.toString().trim();
+  }
+
+  private static String listBasedRemove(String input) {
+    List<Character> latexSpecialCharacters =
+        new ArrayList<>(Arrays.asList('%', '&', '$', '\\', '^', '_', '<', '>', '~', '{', '}', '#'));
+    StringBuilder stringBuilder = new StringBuilder();
+    for (char c : input.toCharArray()) {
+      if (!latexSpecialCharacters.contains(c))
+        stringBuilder.append(c);
+    }
+    return stringBuilder.toString().trim();
+  }
+}
@@ -1,11 +1,18 @@
 package life.qbic.portal.portlet.io;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Test;
 
+import life.qbic.datamodel.printing.IBarcodeBean;
+import life.qbic.datamodel.printing.NewModelBarcodeBean;
 import life.qbic.portal.portlet.io.BarcodeConfig;
 import life.qbic.portal.portlet.io.BarcodeCreator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class BarcodeCreatorTest {
 
@@ -53,4 +60,35 @@ public class BarcodeCreatorTest {
   public void spacesIncludedRemoveTest() {
     assertEquals("test", BarcodeCreator.removeLatexCharacters("test $"));
   }
+
+  @Test
+  public void stringsWithoutLatexCharactersAreNotCopied() {
+    String plain = "QABCD001AE Liver";
+    assertSame(plain, BarcodeCreator.escapeLatexCharacters(plain));
+    assertSame(plain, BarcodeCreator.removeLatexCharacters(plain));
+  }
+
+  @Test
+  public void onlyBeansWithLatexCharactersAreCopied() {
+    IBarcodeBean plain = new NewModelBarcodeBean("QABCD001AE", "QABCD001AE", "Liver", "Human",
+        "Tissue Extracts", Collections.emptyList(), "patient 1", "lab 1");
+    IBarcodeBean special = new NewModelBarcodeBean("QABCD002AM", "QABCD002AM", "50% Liver",
+        "Human", "Tissue Extracts", Collections.emptyList(), "patient 2", "lab 2");
+
+    List<IBarcodeBean> escaped =
+        BarcodeCreator.escapeLatexCharactersFromBeans(Arrays.asList(plain, special));
+
+    assertSame(plain, escaped.get(0));
+    assertNotSame(special, escaped.get(1));
+    assertEquals("50\\% Liver", escaped.get(1).firstInfo());
+  }
+
+  @Test
+  public void beansWithUnsetFieldsAreNotCopied() {
+    IBarcodeBean plain = new NewModelBarcodeBean("QABCD001AE", "QABCD001AE", "Liver", "Human",
+        "Tissue Extracts", Collections.emptyList(), null, null);
+
+    assertSame(plain, BarcodeCreator.escapeLatexCharactersFromBeans(Arrays.asList(plain)).get(0));
+    assertSame(plain, BarcodeCreator.removeLatexCharactersFromBeans(Arrays.asList(plain)).get(0));
+  }
 }
@@ -0,0 +1,134 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServerFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Throughput and concurrency benchmarks of the DBManager operations used when a project is
+ * selected and labels are printed, on an embedded database seeded with production-like volumes.
+ * Not part of the normal test run, use {@code mvn test -P benchmarks}.
+ */
+public class DBManagerBenchmark {
+
+  private static final int PROJECTS = 5000;
+  private static final int PRINTERS = 200;
+  // the production pool allows 20 connections
+  private static final int CONNECTIONS = 20;
+  private static final int WARMUP_OPERATIONS = 500;
+  private static final int OPERATIONS = 5000;
+
+  private static EmbeddedDatabase db;
+  private static JmxDBMetrics metrics;
+  private static DBManager dbManager;
+  private static List<String> projects;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    db = new EmbeddedDatabase(CONNECTIONS);
+    long start = System.nanoTime();
+    projects = db.seed(PROJECTS, PRINTERS);
+    System.out.printf("Seeded %d projects and %d printers in %d ms%n", PROJECTS, PRINTERS,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    metrics = new JmxDBMetrics(MBeanServerFactory.newMBeanServer());
+    dbManager = new DBManager(db.getPool(), metrics);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    db.getPool().destroy();
+  }
+
+  @Test
+  public void personsForProject() throws Exception {
+    run("getPersonsForProject", 1, i -> dbManager
+        .getPersonsForProject(project(i), Arrays.asList(EmbeddedDatabase.SEED_ROLES)));
+    run("getPersonsForProject", CONNECTIONS, i -> dbManager
+        .getPersonsForProject(project(i), Arrays.asList(EmbeddedDatabase.SEED_ROLES)));
+  }
+
+  @Test
+  public void affiliationFromProjectAndRole() throws Exception {
+    run("getAffiliationFromProjectIDAndRole", CONNECTIONS,
+        i -> dbManager.getAffiliationFromProjectIDAndRole(project(i), "PI"));
+  }
+
+  @Test
+  public void printersWithProjects() throws Exception {
+    run("getPrintersWithProjects", 4, i -> dbManager.getPrintersWithProjects());
+  }
+
+  @Test
+  public void projectNamesOfASpace() throws Exception {
+    // names are cached for all sessions, so the database lookup behind the cache is measured
+    run("getProjectNames", CONNECTIONS, i -> {
+      List<String> space = new ArrayList<>();
+      for (int p = i % 100; p < PROJECTS; p += 100) {
+        space.add(EmbeddedDatabase.projectIdentifier(p));
+      }
+      return dbManager.loadProjectNames(space);
+    });
+  }
+
+  @Test
+  public void concurrentLabelCounts() throws Exception {
+    // all threads hit the same few rows, the worst case for the upsert
+    run("addLabelCountEntry", CONNECTIONS,
+        i -> dbManager.addLabelCountEntry("Printer" + i % 5, "Lab " + i % 5, "SPACE" + i % 5,
+            "benchmark", String.format("Q%04d", i % 5), 1));
+    assertEquals(0, metrics.getStats("addLabelCountEntry").getErrors());
+  }
+
+  private static String project(int i) {
+    return projects.get(i % projects.size());
+  }
+
+  private interface Operation {
+
+    Object run(int i);
+  }
+
+  private static void run(String name, int threads, Operation operation) throws Exception {
+    // warm up statement caches and the JIT before measuring
+    for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+      assertNotNull(operation.run(i));
+    }
+    DBOperationStatsMXBean stats = metrics.getStats(name);
+    stats.reset();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int offset = t;
+        tasks.add(() -> {
+          for (int i = offset; i < OPERATIONS; i += threads) {
+            assertNotNull(operation.run(i));
+          }
+          return null;
+        });
+      }
+      long start = System.nanoTime();
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+      long nanos = System.nanoTime() - start;
+      System.out.printf("%-36s %2d threads: %8.0f ops/s, mean %6.2f ms, max %7.2f ms%n", name,
+          threads, OPERATIONS / (nanos / 1e9), stats.getMeanLatencyMillis(),
+          stats.getMaxLatencyMillis());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import life.qbic.portal.portlet.model.LabelCountKey;
+import life.qbic.portal.portlet.model.Person;
+
+public class DBManagerTest {
+
+  private static final int THREADS = 8;
+  private static final String PROJECT = "/MY_SPACE/QABCD";
+
+  private EmbeddedDatabase db;
+  private DBManager dbManager;
+
+  @Before
+  public void setUp() throws Exception {
+    // as many connections as threads: every lookup may only ever hold a single one
+    db = new EmbeddedDatabase(THREADS);
+    int projectID = db.addProject(PROJECT, "Barcode test project");
+    db.addPrinterToProject(db.addPrinter("TSC_TTP-343C", "QBiC LAB", false, "qbic"), projectID);
+    db.addPersonToProject(projectID, db.addPersonWithAffiliation("pi01", "Ada", "Lovelace",
+        "Tübingen"), "PI");
+    db.addPersonToProject(projectID, db.addPersonWithAffiliation("man01", "Alan", "Turing",
+        "Stuttgart"), "Manager");
+    dbManager = new DBManager(db.getPool());
+  }
+
+  @After
+  public void tearDown() {
+    db.getPool().destroy();
+  }
+
+  @Test
+  public void personForProjectIncludesAffiliation() {
+    Person pi = dbManager.getPersonForProject(PROJECT, "PI");
+    assertEquals("Lovelace", pi.getLastName());
+    assertEquals("Tübingen", pi.getAffiliation().getCity());
+
+    Person manager = dbManager.getPersonForProject(PROJECT, "Manager");
+    assertEquals("Turing", manager.getLastName());
+    assertEquals("Stuttgart", manager.getAffiliation().getCity());
+  }
+
+  @Test
+  public void personsForProjectAreFetchedPerRole() {
+    Map<String, Person> persons =
+        dbManager.getPersonsForProject(PROJECT, Arrays.asList("PI", "Manager", "Contact"));
+    assertEquals(2, persons.size());
+    assertEquals("Lovelace", persons.get("PI").getLastName());
+    assertEquals("Tübingen", persons.get("PI").getAffiliation().getCity());
+    assertEquals("QBiC", persons.get("PI").getAffiliation().getAddressAddition());
+    assertEquals("Turing", persons.get("Manager").getLastName());
+    assertEquals("Stuttgart", persons.get("Manager").getAffiliation().getCity());
+    assertNull(persons.get("Contact"));
+  }
+
+  @Test
+  public void nestedLookupsUseOneConnection() {
+    dbManager.getPersonForProject(PROJECT, "PI");
+    assertEquals(1, db.getPool().getMaxHeldByOneThread());
+  }
+
+  @Test
+  public void concurrentLookupsDoNotExhaustPool() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Callable<Person>> lookups = new ArrayList<>();
+      for (int i = 0; i < THREADS * 25; i++) {
+        String role = i % 2 == 0 ? "PI" : "Manager";
+        lookups.add(() -> dbManager.getPersonForProject(PROJECT, role));
+      }
+      for (Future<Person> person : executor.invokeAll(lookups)) {
+        assertNotNull(person.get());
+        assertNotNull(person.get().getAffiliation());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, db.getPool().getMaxHeldByOneThread());
+  }
+
+  @Test
+  public void addedProjectIsNotCachedAsUnknown() {
+    String project = "/MY_SPACE/QNEW1";
+    assertTrue(dbManager.getProjectNames(Collections.singletonList(project)).isEmpty());
+
+    dbManager.addProjectToDB(project, "New project");
+
+    assertEquals("New project", dbManager.getProjectName(project));
+  }
+
+  @Test
+  public void labelCountsAreAccumulated() {
+    assertEquals(12,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 12));
+    assertEquals(20,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 8));
+    assertEquals(5,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "other", "QABCD", 5));
+  }
+
+  @Test
+  public void labelCountsAreAccumulatedWithoutUniqueKey() throws Exception {
+    db.dropLabelCountKey();
+    assertEquals(12,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 12));
+    assertEquals(20,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 8));
+    assertEquals(-1,
+        dbManager.addLabelCountEntry("unknown", "QBiC LAB", "MY_SPACE", "user", "QABCD", 12));
+    assertEquals(1, (int) db.execute(conn -> {
+      try (Statement statement = conn.createStatement();
+          ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM printed_label_counts")) {
+        rs.next();
+        return rs.getInt(1);
+      }
+    }));
+  }
+
+  @Test
+  public void batchedLabelCountsAreStoredOneByOneIfOneIsRejected() {
+    Map<LabelCountKey, Integer> counts = new HashMap<>();
+    counts.put(new LabelCountKey("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "QABCD", "user"), 5);
+    counts.put(new LabelCountKey("unknown", "QBiC LAB", "MY_SPACE", "QABCD", "user"), 6);
+    counts.put(new LabelCountKey("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "QABCD",
+        String.join("", Collections.nCopies(100, "user"))), 7);
+
+    assertTrue(dbManager.addLabelCountEntries(counts).isEmpty());
+    assertEquals(5,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 0));
+  }
+
+  @Test
+  public void batchedLabelCountsAreReturnedIfTheDatabaseFails() throws Exception {
+    db.execute(conn -> conn.createStatement().execute("DROP TABLE printed_label_counts"));
+    Map<LabelCountKey, Integer> counts = Collections.singletonMap(
+        new LabelCountKey("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "QABCD", "user"), 5);
+
+    assertEquals(counts, dbManager.addLabelCountEntries(counts));
+  }
+
+  @Test
+  public void labelCountsOfUnknownPrinterAreRejected() {
+    assertEquals(-1,
+        dbManager.addLabelCountEntry("unknown", "QBiC LAB", "MY_SPACE", "user", "QABCD", 12));
+  }
+
+  @Test
+  public void concurrentLabelCountsAreNotLost() throws Exception {
+    printConcurrently();
+    assertEquals(THREADS * 25 + 1,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 1));
+  }
+
+  @Test
+  public void concurrentLabelCountsAreNotDuplicatedWithoutUniqueKey() throws Exception {
+    db.dropLabelCountKey();
+    assertFalse(dbManager.checkLabelCountKey());
+
+    printConcurrently();
+
+    assertEquals(THREADS * 25 + 1,
+        dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 1));
+    assertEquals(1, (int) db.execute(conn -> {
+      try (Statement statement = conn.createStatement();
+          ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM printed_label_counts")) {
+        rs.next();
+        return rs.getInt(1);
+      }
+    }));
+  }
+
+  private void printConcurrently() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Callable<Integer>> prints = new ArrayList<>();
+      for (int i = 0; i < THREADS * 25; i++) {
+        prints.add(() -> dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE",
+            "user", "QABCD", 1));
+      }
+      for (Future<Integer> total : executor.invokeAll(prints)) {
+        assertNotEquals(-1, (int) total.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
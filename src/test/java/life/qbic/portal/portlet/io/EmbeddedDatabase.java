@@ -0,0 +1,289 @@
+package life.qbic.portal.portlet.io;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.h2.tools.RunScript;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
+
+/**
+ * In-memory H2 database in MySQL mode with the user management schema used by {@link DBManager}.
+ * The connection pool handed out keeps track of how many connections each thread holds at once.
+ */
+class EmbeddedDatabase {
+
+  private static final AtomicInteger N_DATABASES = new AtomicInteger(0);
+  // ids of seeded rows start here, so they do not collide with rows added one by one
+  private static final int SEED_OFFSET = 100000;
+  static final String[] SEED_ROLES = {"PI", "Manager", "Contact"};
+
+  private final CountingConnectionPool pool;
+
+  EmbeddedDatabase(int maxConnections) throws SQLException {
+    String url = "jdbc:h2:mem:usermanagement" + N_DATABASES.incrementAndGet()
+        + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    pool = new CountingConnectionPool(
+        new SimpleJDBCConnectionPool("org.h2.Driver", url, "sa", "", 1, maxConnections));
+    execute(conn -> {
+      try (Reader schema = new InputStreamReader(
+          EmbeddedDatabase.class.getResourceAsStream("/db/schema.sql"), StandardCharsets.UTF_8)) {
+        RunScript.execute(conn, schema);
+      } catch (IOException e) {
+        throw new SQLException(e);
+      }
+      return null;
+    });
+  }
+
+  CountingConnectionPool getPool() {
+    return pool;
+  }
+
+  <T> T execute(DBManager.UnitOfWork<T> work) throws SQLException {
+    Connection conn = pool.reserveConnection();
+    try {
+      T res = work.execute(conn);
+      conn.commit();
+      return res;
+    } finally {
+      pool.releaseConnection(conn);
+    }
+  }
+
+  int insert(String sql, Object... params) throws SQLException {
+    return execute(conn -> {
+      try (PreparedStatement statement =
+          conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        for (int i = 0; i < params.length; i++) {
+          statement.setObject(i + 1, params[i]);
+        }
+        statement.executeUpdate();
+        try (ResultSet rs = statement.getGeneratedKeys()) {
+          return rs.next() ? rs.getInt(1) : -1;
+        }
+      }
+    });
+  }
+
+  int addProject(String identifier, String shortTitle) throws SQLException {
+    return insert("INSERT INTO projects (openbis_project_identifier, short_title) VALUES (?, ?)",
+        identifier, shortTitle);
+  }
+
+  int addPersonWithAffiliation(String userID, String first, String last, String city)
+      throws SQLException {
+    int personID = insert(
+        "INSERT INTO person (user_id, title, first_name, last_name, email) VALUES (?, ?, ?, ?, ?)",
+        userID, "Dr.", first, last, userID + "@qbic.uni-tuebingen.de");
+    int affiliationID = insert(
+        "INSERT INTO affiliation (organization, address_addition, street, postal_code, city, country) "
+            + "VALUES (?, ?, ?, ?, ?, ?)",
+        "University of " + city, "QBiC", "Auf der Morgenstelle 10", "72076", city, "Germany");
+    insert("INSERT INTO person_affiliation (person_id, affiliation_id) VALUES (?, ?)", personID,
+        affiliationID);
+    return personID;
+  }
+
+  void addPersonToProject(int projectID, int personID, String role) throws SQLException {
+    insert("INSERT INTO projects_persons (project_id, person_id, project_role) VALUES (?, ?, ?)",
+        projectID, personID, role);
+  }
+
+  int addPrinter(String name, String location, boolean adminOnly, String userGroup)
+      throws SQLException {
+    return insert(
+        "INSERT INTO labelprinter (name, location, url, status, type, admin_only, user_group) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+        name, location, name.toLowerCase() + ".qbic.uni-tuebingen.de", "ACTIVE", "Label Printer",
+        adminOnly, userGroup);
+  }
+
+  void addPrinterToProject(int printerID, int projectID) throws SQLException {
+    insert("INSERT INTO printer_project_association (printer_id, project_id, status) "
+        + "VALUES (?, ?, ?)", printerID, projectID, "ACTIVE");
+  }
+
+  /**
+   * Fills the database with volumes similar to the production user management database: projects
+   * spread over spaces, each with a PI, a manager and a contact with their affiliations, printers
+   * of several user groups associated with the projects and printed label counts.
+   *
+   * @param numProjects number of projects, identifiers are /SPACE&lt;n&gt;/Q&lt;code&gt;
+   * @param numPrinters number of printers, every tenth is an admin printer
+   * @return identifiers of the seeded projects
+   */
+  List<String> seed(int numProjects, int numPrinters) throws SQLException {
+    List<String> projects = new ArrayList<>(numProjects);
+    for (int i = 0; i < numProjects; i++) {
+      projects.add(projectIdentifier(i));
+    }
+    execute(conn -> {
+      try (PreparedStatement project = conn.prepareStatement(
+          "INSERT INTO projects (id, openbis_project_identifier, short_title) VALUES (?, ?, ?)")) {
+        for (int i = 0; i < numProjects; i++) {
+          project.setInt(1, SEED_OFFSET + i);
+          project.setString(2, projects.get(i));
+          project.setString(3, "Seeded project number " + i);
+          project.addBatch();
+        }
+        project.executeBatch();
+      }
+      try (PreparedStatement person = conn.prepareStatement(
+          "INSERT INTO person (id, user_id, title, first_name, last_name, email) "
+              + "VALUES (?, ?, ?, ?, ?, ?)");
+          PreparedStatement affiliation = conn.prepareStatement(
+              "INSERT INTO affiliation (id, organization, address_addition, street, postal_code, "
+                  + "city, country) VALUES (?, ?, ?, ?, ?, ?, ?)");
+          PreparedStatement personAffiliation = conn.prepareStatement(
+              "INSERT INTO person_affiliation (person_id, affiliation_id) VALUES (?, ?)");
+          PreparedStatement projectPerson = conn.prepareStatement(
+              "INSERT INTO projects_persons (project_id, person_id, project_role) "
+                  + "VALUES (?, ?, ?)")) {
+        int numAffiliations = Math.max(1, numProjects / 10);
+        for (int i = 0; i < numAffiliations; i++) {
+          affiliation.setInt(1, SEED_OFFSET + i);
+          affiliation.setString(2, "Institute " + i);
+          affiliation.setString(3, "Department " + i % 7);
+          affiliation.setString(4, "Street " + i);
+          affiliation.setString(5, String.format("%05d", i));
+          affiliation.setString(6, "City " + i % 50);
+          affiliation.setString(7, "Germany");
+          affiliation.addBatch();
+        }
+        affiliation.executeBatch();
+        for (int i = 0; i < numProjects; i++) {
+          for (int r = 0; r < SEED_ROLES.length; r++) {
+            int personID = SEED_OFFSET + i * SEED_ROLES.length + r;
+            person.setInt(1, personID);
+            person.setString(2, "user" + personID);
+            person.setString(3, "Dr.");
+            person.setString(4, "First" + personID);
+            person.setString(5, "Last" + personID);
+            person.setString(6, "user" + personID + "@qbic.uni-tuebingen.de");
+            person.addBatch();
+            personAffiliation.setInt(1, personID);
+            personAffiliation.setInt(2, SEED_OFFSET + personID % numAffiliations);
+            personAffiliation.addBatch();
+            projectPerson.setInt(1, SEED_OFFSET + i);
+            projectPerson.setInt(2, personID);
+            projectPerson.setString(3, SEED_ROLES[r]);
+            projectPerson.addBatch();
+          }
+        }
+        person.executeBatch();
+        personAffiliation.executeBatch();
+        projectPerson.executeBatch();
+      }
+      try (PreparedStatement printer = conn.prepareStatement(
+          "INSERT INTO labelprinter (id, name, location, url, status, type, admin_only, "
+              + "user_group) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+          PreparedStatement association = conn.prepareStatement(
+              "INSERT INTO printer_project_association (printer_id, project_id, status) "
+                  + "VALUES (?, ?, ?)");
+          PreparedStatement counts = conn.prepareStatement(
+              "INSERT INTO printed_label_counts (printer_id, project_id, user_name, num_printed) "
+                  + "VALUES (?, ?, ?, ?)")) {
+        for (int i = 0; i < numPrinters; i++) {
+          printer.setInt(1, SEED_OFFSET + i);
+          printer.setString(2, "Printer" + i);
+          printer.setString(3, "Lab " + i);
+          printer.setString(4, "printer" + i + ".qbic.uni-tuebingen.de");
+          printer.setString(5, "ACTIVE");
+          printer.setString(6, "Label Printer");
+          printer.setBoolean(7, i % 10 == 0);
+          printer.setString(8, "group" + i % 20);
+          printer.addBatch();
+        }
+        printer.executeBatch();
+        for (int i = 0; i < numProjects; i++) {
+          int printerID = SEED_OFFSET + i % numPrinters;
+          association.setInt(1, printerID);
+          association.setInt(2, SEED_OFFSET + i);
+          association.setString(3, "ACTIVE");
+          association.addBatch();
+          counts.setInt(1, printerID);
+          counts.setInt(2, SEED_OFFSET + i);
+          counts.setString(3, "user" + (SEED_OFFSET + i * SEED_ROLES.length));
+          counts.setInt(4, 10 + i % 500);
+          counts.addBatch();
+        }
+        association.executeBatch();
+        counts.executeBatch();
+      }
+      return null;
+    });
+    return projects;
+  }
+
+  /**
+   * Recreates printed_label_counts without its unique key, as in databases that were not migrated
+   */
+  void dropLabelCountKey() throws SQLException {
+    execute(conn -> {
+      try (Statement statement = conn.createStatement()) {
+        statement.execute("DROP TABLE printed_label_counts");
+        statement.execute("CREATE TABLE printed_label_counts (printer_id INT NOT NULL, "
+            + "project_id INT NOT NULL, user_name VARCHAR(64) NOT NULL, "
+            + "num_printed INT NOT NULL DEFAULT 0)");
+      }
+      return null;
+    });
+  }
+
+  static String projectIdentifier(int seedIndex) {
+    return String.format("/SPACE%d/Q%04d", seedIndex % 100, seedIndex);
+  }
+
+  /**
+   * Delegating pool that records the highest number of connections a single thread held at the
+   * same time.
+   */
+  static class CountingConnectionPool implements JDBCConnectionPool {
+
+    private static final long serialVersionUID = 1L;
+
+    private final JDBCConnectionPool delegate;
+    private final Map<Thread, AtomicInteger> heldByThread = new ConcurrentHashMap<>();
+    private final AtomicInteger maxHeldByOneThread = new AtomicInteger(0);
+
+    CountingConnectionPool(JDBCConnectionPool delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Connection reserveConnection() throws SQLException {
+      Connection conn = delegate.reserveConnection();
+      int held = heldByThread.computeIfAbsent(Thread.currentThread(), t -> new AtomicInteger())
+          .incrementAndGet();
+      maxHeldByOneThread.accumulateAndGet(held, Math::max);
+      return conn;
+    }
+
+    @Override
+    public void releaseConnection(Connection conn) {
+      heldByThread.get(Thread.currentThread()).decrementAndGet();
+      delegate.releaseConnection(conn);
+    }
+
+    @Override
+    public void destroy() {
+      delegate.destroy();
+    }
+
+    int getMaxHeldByOneThread() {
+      return maxHeldByOneThread.get();
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import life.qbic.portal.portlet.model.ProjectDesign;
+import org.junit.Test;
+
+public class ExperimentalDesignCacheTest {
+
+  private final AtomicInteger parsed = new AtomicInteger();
+
+  private Supplier<ProjectDesign> parser() {
+    return () -> {
+      parsed.incrementAndGet();
+      return new ProjectDesign(new ArrayList<>(), new HashMap<>(), new HashMap<>());
+    };
+  }
+
+  @Test
+  public void designsAreParsedOncePerModification() {
+    ExperimentalDesignCache cache = new ExperimentalDesignCache(10);
+    ProjectDesign first = cache.get("/A/QAAAA/QAAAA_INFO", 1, parser());
+    assertSame(first, cache.get("/A/QAAAA/QAAAA_INFO", 1, parser()));
+    assertEquals(1, parsed.get());
+
+    assertNotSame(first, cache.get("/A/QAAAA/QAAAA_INFO", 2, parser()));
+    assertEquals(2, parsed.get());
+  }
+
+  @Test
+  public void leastRecentlyUsedDesignsAreEvicted() {
+    ExperimentalDesignCache cache = new ExperimentalDesignCache(2);
+    cache.get("/A/QAAAA/QAAAA_INFO", 1, parser());
+    cache.get("/A/QBBBB/QBBBB_INFO", 1, parser());
+    cache.get("/A/QAAAA/QAAAA_INFO", 1, parser());
+    cache.get("/A/QCCCC/QCCCC_INFO", 1, parser());
+    assertEquals(2, cache.size());
+    assertEquals(3, parsed.get());
+
+    cache.get("/A/QAAAA/QAAAA_INFO", 1, parser());
+    assertEquals(3, parsed.get());
+    cache.get("/A/QBBBB/QBBBB_INFO", 1, parser());
+    assertEquals(4, parsed.get());
+  }
+}
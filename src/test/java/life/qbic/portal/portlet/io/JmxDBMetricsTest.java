@@ -0,0 +1,98 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JmxDBMetricsTest {
+
+  private static final String PROJECT = "/MY_SPACE/QABCD";
+
+  private MBeanServer server;
+  private JmxDBMetrics metrics;
+  private EmbeddedDatabase db;
+  private DBManager dbManager;
+
+  @Before
+  public void setUp() throws Exception {
+    server = MBeanServerFactory.newMBeanServer();
+    metrics = new JmxDBMetrics(server);
+    db = new EmbeddedDatabase(2);
+    int projectID = db.addProject(PROJECT, "Barcode test project");
+    db.addPersonToProject(projectID, db.addPersonWithAffiliation("pi01", "Ada", "Lovelace",
+        "Tübingen"), "PI");
+    dbManager = new DBManager(db.getPool(), metrics);
+  }
+
+  @After
+  public void tearDown() {
+    db.getPool().destroy();
+  }
+
+  @Test
+  public void operationsAreRecordedWithRows() throws Exception {
+    dbManager.getPersonsForProject(PROJECT, Arrays.asList("PI", "Manager"));
+    dbManager.getPersonsForProject(PROJECT, Arrays.asList("PI", "Manager"));
+
+    DBOperationStatsMXBean stats = metrics.getStats("getPersonsForProject");
+    assertEquals(2, stats.getCalls());
+    assertEquals(0, stats.getErrors());
+    assertEquals(2, stats.getRows());
+    assertEquals(2, Arrays.stream(stats.getLatencyHistogram()).sum());
+    assertEquals(2, metrics.getStats(JmxDBMetrics.POOL_ACQUIRE).getCalls());
+    assertEquals(2L,
+        server.getAttribute(JmxDBMetrics.objectName("getPersonsForProject"), "Calls"));
+  }
+
+  @Test
+  public void scalarResultsAreNoRows() {
+    dbManager.addProjectToDB("/MY_SPACE/QNEW2", "New project");
+    dbManager.hasPersonRoleInProject(1, 1, "PI");
+    dbManager.getPersonForProject(PROJECT, "PI");
+
+    assertEquals(0, metrics.getStats("addProjectToDB").getRows());
+    assertEquals(0, metrics.getStats("hasPersonRoleInProject").getRows());
+    assertEquals(1, metrics.getStats("getPersonForProject").getRows());
+  }
+
+  @Test
+  public void failedOperationsAreCountedAsErrors() throws Exception {
+    db.execute(conn -> conn.createStatement().execute("DROP TABLE labelprinter"));
+
+    assertNull(dbManager.getPrintersWithProjects());
+
+    assertEquals(1, metrics.getStats("getPrintersWithProjects").getErrors());
+  }
+
+  @Test
+  public void latenciesAreBucketed() {
+    metrics.recordOperation("op", TimeUnit.MILLISECONDS.toNanos(7), 1, false);
+    metrics.recordOperation("op", TimeUnit.SECONDS.toNanos(10), 1, false);
+
+    long[] histogram = metrics.getStats("op").getLatencyHistogram();
+    long[] expected = new long[histogram.length];
+    expected[2] = 1;
+    expected[histogram.length - 1] = 1;
+    assertArrayEquals(expected, histogram);
+  }
+
+  @Test
+  public void platformMetricsAreUnregisteredOnShutdown() throws Exception {
+    JmxDBMetrics.start().recordPoolAcquire(1000, false);
+    MBeanServer platform = ManagementFactory.getPlatformMBeanServer();
+    assertEquals(true, platform.isRegistered(JmxDBMetrics.objectName(JmxDBMetrics.POOL_ACQUIRE)));
+
+    JmxDBMetrics.shutdown();
+
+    assertEquals(false, platform.isRegistered(JmxDBMetrics.objectName(JmxDBMetrics.POOL_ACQUIRE)));
+  }
+}
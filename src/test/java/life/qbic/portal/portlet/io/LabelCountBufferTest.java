@@ -0,0 +1,110 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import life.qbic.portal.portlet.model.LabelCountKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LabelCountBufferTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private EmbeddedDatabase db;
+  private DBManager dbManager;
+  private File journal;
+
+  @Before
+  public void setUp() throws Exception {
+    db = new EmbeddedDatabase(2);
+    int projectID = db.addProject("/MY_SPACE/QABCD", "Barcode test project");
+    db.addPrinterToProject(db.addPrinter("TSC_TTP-343C", "QBiC LAB", false, "qbic"), projectID);
+    dbManager = new DBManager(db.getPool());
+    journal = new File(folder.getRoot(), "printed_label_counts.journal");
+  }
+
+  @After
+  public void tearDown() {
+    LabelCountBuffer.shutdown();
+    db.getPool().destroy();
+  }
+
+  @Test
+  public void countsAreCoalescedAndWrittenOnShutdown() throws Exception {
+    LabelCountBuffer buffer = LabelCountBuffer.start(dbManager, journal);
+    buffer.add("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 10);
+    buffer.add("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 5);
+    assertEquals(2, Files.readAllLines(journal.toPath()).size());
+
+    LabelCountBuffer.shutdown();
+
+    assertEquals(15, printedSoFar());
+    assertTrue(Files.readAllLines(journal.toPath()).isEmpty());
+  }
+
+  @Test
+  public void journaledCountsAreReplayedOnStart() throws Exception {
+    Files.write(journal.toPath(),
+        Collections.singletonList("TSC_TTP-343C\tQBiC+LAB\tMY_SPACE\tQABCD\tuser\t7"),
+        StandardCharsets.UTF_8);
+
+    LabelCountBuffer.start(dbManager, journal);
+    LabelCountBuffer.shutdown();
+
+    assertEquals(7, printedSoFar());
+  }
+
+  @Test
+  public void countsStayJournaledIfTheyCannotBeStored() throws Exception {
+    LabelCountBuffer buffer = LabelCountBuffer.start(dbManager, journal);
+    db.execute(conn -> conn.createStatement().execute("DROP TABLE printed_label_counts"));
+    buffer.add("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 3);
+
+    buffer.flush();
+
+    assertEquals(1, Files.readAllLines(journal.toPath()).size());
+  }
+
+  @Test
+  public void rejectedCountsDoNotHoldBackOthers() throws Exception {
+    LabelCountBuffer buffer = LabelCountBuffer.start(dbManager, journal);
+    String tooLong = String.join("", Collections.nCopies(100, "user"));
+    buffer.add("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", tooLong, "QABCD", 3);
+    buffer.add("unknown", "QBiC LAB", "MY_SPACE", "user", "QABCD", 4);
+    buffer.add("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD", 5);
+
+    buffer.flush();
+
+    assertEquals(5, printedSoFar());
+    assertTrue(buffer.getPending().isEmpty());
+    assertTrue(Files.readAllLines(journal.toPath()).isEmpty());
+  }
+
+  @Test
+  public void nullFieldsAreReplayedAsNull() throws Exception {
+    db.execute(conn -> conn.createStatement().execute("DROP TABLE printed_label_counts"));
+    LabelCountBuffer.start(dbManager, journal).add("TSC_TTP-343C", null, "MY_SPACE", "",
+        "QABCD", 4);
+    LabelCountBuffer.shutdown();
+
+    LabelCountBuffer replayed = LabelCountBuffer.start(dbManager, journal);
+
+    assertEquals(Collections.singletonMap(
+        new LabelCountKey("TSC_TTP-343C", null, "MY_SPACE", "QABCD", ""), 4),
+        replayed.getPending());
+  }
+
+  private int printedSoFar() {
+    return dbManager.addLabelCountEntry("TSC_TTP-343C", "QBiC LAB", "MY_SPACE", "user", "QABCD",
+        0);
+  }
+}
@@ -0,0 +1,187 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import ch.systemsx.cisd.common.exceptions.InvalidSessionException;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.IGeneralInformationService;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SearchCriteria;
+import life.qbic.openbis.openbisclient.IOpenBisClient;
+import org.junit.Test;
+
+public class OpenBisAccessTest {
+
+  private final AtomicInteger logins = new AtomicInteger();
+  private final AtomicInteger spaceCalls = new AtomicInteger();
+  private final AtomicInteger logoutCalls = new AtomicInteger();
+  private final List<String> loggedOut = new CopyOnWriteArrayList<>();
+  private final List<String> searchTokens = new CopyOnWriteArrayList<>();
+  private int expiredSpaceCalls = 1;
+  private CyclicBarrier expiredCallsStarted;
+  private CountDownLatch spacesStarted;
+  private CountDownLatch spacesReleased;
+
+  private final IGeneralInformationService fakeService =
+      (IGeneralInformationService) Proxy.newProxyInstance(
+          IGeneralInformationService.class.getClassLoader(),
+          new Class<?>[] {IGeneralInformationService.class}, (proxy, method, args) -> {
+            if (method.getName().equals("logout")) {
+              loggedOut.add((String) args[0]);
+              return null;
+            }
+            // the first search fails with an expired session
+            if (method.getName().equals("searchForSamples")) {
+              searchTokens.add((String) args[0]);
+              if (searchTokens.size() == 1) {
+                throw new InvalidSessionException("Session no longer available");
+              }
+              return Collections.emptyList();
+            }
+            throw new UnsupportedOperationException(method.getName());
+          });
+
+  // fails the first getUserSpaces calls and every logout call with an expired session
+  private final IOpenBisClient fakeClient = (IOpenBisClient) Proxy.newProxyInstance(
+      IOpenBisClient.class.getClassLoader(), new Class<?>[] {IOpenBisClient.class},
+      (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "login":
+            logins.incrementAndGet();
+            return null;
+          case "getSessionToken":
+            return "token-" + logins.get();
+          case "getOpenbisInfoService":
+            return fakeService;
+          case "getUserSpaces":
+            if (spaceCalls.incrementAndGet() <= expiredSpaceCalls) {
+              if (expiredCallsStarted != null) {
+                expiredCallsStarted.await();
+              }
+              throw new InvalidSessionException("Session no longer available");
+            }
+            if (spacesStarted != null) {
+              spacesStarted.countDown();
+              spacesReleased.await();
+            }
+            return Collections.singletonList("MY_SPACE");
+          case "logout":
+            logoutCalls.incrementAndGet();
+            throw new InvalidSessionException("Session no longer available");
+          case "isUserAdmin":
+            throw new IllegalStateException("No session for this user");
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      });
+
+  @Test
+  public void sessionIsRenewedWhenItExpired() {
+    OpenBisAccess access = new OpenBisAccess(fakeClient);
+    assertEquals(1, logins.get());
+
+    List<String> spaces = access.getClient().getUserSpaces("user");
+
+    assertEquals(Collections.singletonList("MY_SPACE"), spaces);
+    assertEquals(2, logins.get());
+    assertEquals(2, spaceCalls.get());
+    assertEquals(Collections.singletonList("token-1"), loggedOut);
+  }
+
+  @Test
+  public void sessionIsRenewedOnceForConcurrentCalls() throws Exception {
+    expiredSpaceCalls = 2;
+    expiredCallsStarted = new CyclicBarrier(2);
+    OpenBisAccess access = new OpenBisAccess(fakeClient);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<String>> first = executor.submit(() -> access.getClient().getUserSpaces("a"));
+      Future<List<String>> second = executor.submit(() -> access.getClient().getUserSpaces("b"));
+
+      assertEquals(Collections.singletonList("MY_SPACE"), first.get());
+      assertEquals(Collections.singletonList("MY_SPACE"), second.get());
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(2, logins.get());
+    assertEquals(4, spaceCalls.get());
+    assertEquals(Collections.singletonList("token-1"), loggedOut);
+  }
+
+  @Test
+  public void replacedSessionIsLoggedOutAfterItsCalls() throws Exception {
+    expiredSpaceCalls = 0;
+    spacesStarted = new CountDownLatch(1);
+    spacesReleased = new CountDownLatch(1);
+    OpenBisAccess access = new OpenBisAccess(fakeClient);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<String>> running = executor.submit(() -> access.getClient().getUserSpaces("a"));
+      spacesStarted.await();
+      try {
+        access.getClient().logout();
+        fail();
+      } catch (InvalidSessionException e) {
+        // renews the session while the other call still uses the old one
+      }
+      assertEquals(2, logins.get());
+      assertEquals(Collections.emptyList(), loggedOut);
+
+      spacesReleased.countDown();
+      running.get();
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(Collections.singletonList("token-1"), loggedOut);
+  }
+
+  @Test
+  public void serviceSearchIsRepeatedWithRenewedSession() {
+    OpenBisAccess access = new OpenBisAccess(fakeClient);
+    IOpenBisClient client = access.getClient();
+
+    client.getOpenbisInfoService().searchForSamples(client.getSessionToken(),
+        new SearchCriteria());
+
+    assertEquals(Arrays.asList("token-1", "token-2"), searchTokens);
+    assertEquals(2, logins.get());
+  }
+
+  @Test
+  public void otherCallsAreNotRepeated() {
+    OpenBisAccess access = new OpenBisAccess(fakeClient);
+    try {
+      access.getClient().logout();
+      fail();
+    } catch (InvalidSessionException e) {
+      // expected
+    }
+    assertEquals(1, logoutCalls.get());
+    assertEquals(2, logins.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void sessionIsNotRenewedForOtherErrors() {
+    OpenBisAccess access = new OpenBisAccess(fakeClient);
+    try {
+      access.getClient().isUserAdmin("user");
+    } finally {
+      assertEquals(1, logins.get());
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void otherErrorsArePassedOn() {
+    new OpenBisAccess(fakeClient).getClient().getProjectsOfSpace("MY_SPACE");
+  }
+}
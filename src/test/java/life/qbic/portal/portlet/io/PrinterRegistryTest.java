@@ -0,0 +1,53 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.Set;
+import life.qbic.datamodel.printing.Printer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrinterRegistryTest {
+
+  private EmbeddedDatabase db;
+  private DBManager dbManager;
+
+  @Before
+  public void setUp() throws Exception {
+    db = new EmbeddedDatabase(2);
+    int projectID = db.addProject("/MY_SPACE/QABCD", "Barcode test project");
+    db.addProject("/MY_SPACE/QEFGH", "Other project");
+    db.addPrinterToProject(db.addPrinter("TSC_TTP-343C", "QBiC LAB", false, "qbic"), projectID);
+    db.addPrinter("Admin printer", "QBiC LAB", true, null);
+    dbManager = new DBManager(db.getPool());
+  }
+
+  @After
+  public void tearDown() {
+    PrinterRegistry.shutdown();
+    db.getPool().destroy();
+  }
+
+  @Test
+  public void printersAreResolvedPerProject() {
+    PrinterRegistry registry = PrinterRegistry.start(dbManager);
+
+    Set<Printer> printers = registry.getPrintersForProject("QABCD", Collections.emptyList());
+    Set<Printer> otherPrinters = registry.getPrintersForProject("QEFGH", Collections.emptyList());
+
+    assertEquals(2, printers.size());
+    assertEquals(1, otherPrinters.size());
+  }
+
+  @Test
+  public void printersAreKeptIfRefreshFails() throws Exception {
+    PrinterRegistry registry = PrinterRegistry.start(dbManager);
+    db.execute(conn -> conn.createStatement().execute("DROP TABLE labelprinter"));
+
+    registry.refresh();
+
+    assertEquals(2, registry.getPrintersForProject("QABCD", Collections.emptyList()).size());
+  }
+}
@@ -0,0 +1,380 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.IGeneralInformationService;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.EntityRegistrationDetails;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.EntityRegistrationDetails.EntityRegistrationDetailsInitializer;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Experiment;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Experiment.ExperimentInitializer;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Sample.SampleInitializer;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SampleFetchOption;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SearchCriteria;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.SearchCriteria.MatchClause;
+import ch.systemsx.cisd.openbis.plugin.query.shared.api.v1.dto.QueryTableModel;
+import life.qbic.openbis.openbisclient.IOpenBisClient;
+import life.qbic.portal.portlet.model.BarcodeSample;
+import life.qbic.portal.portlet.model.ExperimentBarcodeSummary;
+import life.qbic.portal.portlet.model.ProjectSnapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProjectLoaderTest {
+
+  private static final String E1 = "/MY_SPACE/QABCD/QABCDE1";
+  private static final String E2 = "/MY_SPACE/QABCD/QABCDE2";
+  private static final Date REGISTERED = new Date(1500000000000L);
+
+  private final AtomicLong ids = new AtomicLong();
+  private final Map<String, Experiment> experiments = new LinkedHashMap<>();
+  private final Map<String, Sample> samples = new LinkedHashMap<>();
+  private final AtomicInteger projectLoads = new AtomicInteger();
+  private final AtomicInteger experimentSearches = new AtomicInteger();
+  private final AtomicInteger summaryCalls = new AtomicInteger();
+  private boolean summaryServiceFails = false;
+
+  // searches the samples of the experiments whose codes are in the search criteria
+  private final IGeneralInformationService fakeInfoService =
+      (IGeneralInformationService) Proxy.newProxyInstance(
+          IGeneralInformationService.class.getClassLoader(),
+          new Class<?>[] {IGeneralInformationService.class}, (proxy, method, args) -> {
+            if (!method.getName().equals("searchForSamples")) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            experimentSearches.incrementAndGet();
+            Set<String> values = new HashSet<>();
+            for (MatchClause clause : ((SearchCriteria) args[1]).getSubCriterias().get(0)
+                .getCriteria().getMatchClauses()) {
+              values.add(clause.getDesiredValue());
+            }
+            List<Sample> res = new ArrayList<>();
+            for (Sample s : samples.values()) {
+              String[] split = s.getExperimentIdentifierOrNull().split("/");
+              if (values.contains(split[split.length - 1])) {
+                res.add(s);
+              }
+            }
+            return res;
+          });
+
+  private final IOpenBisClient fakeClient = (IOpenBisClient) Proxy.newProxyInstance(
+      IOpenBisClient.class.getClassLoader(), new Class<?>[] {IOpenBisClient.class},
+      (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "getExperimentsForProject":
+            return new ArrayList<>(experiments.values());
+          case "getSamplesWithParentsAndChildrenOfProjectBySearchService":
+            projectLoads.incrementAndGet();
+            return new ArrayList<>(samples.values());
+          case "getAggregationService":
+            summaryCalls.incrementAndGet();
+            if (summaryServiceFails) {
+              throw new IllegalStateException("Service " + args[0] + " not found");
+            }
+            return summarize();
+          case "getOpenbisInfoService":
+            return fakeInfoService;
+          case "getSessionToken":
+            return "token";
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      });
+
+  private ProjectLoader loader;
+
+  @Before
+  public void setUp() {
+    ProjectLoader.resetSummaryService();
+    putExperiment(E1, 1);
+    putExperiment(E2, 1);
+    putSample("QABCD001AE", E1, "Q_TEST_SAMPLE", "DNA");
+    putSample("QABCD002AM", E1, "Q_TEST_SAMPLE", "DNA");
+    putSample("QABCD003AU", E2, "Q_BIOLOGICAL_SAMPLE", null);
+    loader = new ProjectLoader(fakeClient, new VocabularyCache(fakeClient),
+        new ProjectSnapshotCache(1000), new ExperimentalDesignCache(10), true);
+  }
+
+  private void putExperiment(String identifier, long modified) {
+    ExperimentInitializer init = new ExperimentInitializer();
+    init.setId(ids.incrementAndGet());
+    init.setPermId("perm-" + identifier);
+    init.setCode(identifier.substring(identifier.lastIndexOf('/') + 1));
+    init.setIdentifier(identifier);
+    init.setExperimentTypeCode("Q_SAMPLE_PREPARATION");
+    init.putProperty("Q_SECONDARY_NAME", "Experiment " + identifier);
+    init.setRegistrationDetails(details(new Date(REGISTERED.getTime() + modified)));
+    experiments.put(identifier, new Experiment(init));
+  }
+
+  // openBIS modifies an experiment when its samples change
+  private void touch(String experimentID) {
+    long modified = experiments.get(experimentID).getRegistrationDetails().getModificationDate()
+        .getTime() - REGISTERED.getTime();
+    putExperiment(experimentID, modified + 1);
+  }
+
+  private void putSample(String code, String experimentID, String type, String sampleType) {
+    putSample(code, experimentID, type, sampleType, code + " name");
+  }
+
+  private void putSample(String code, String experimentID, String type, String sampleType,
+      String secondaryName) {
+    SampleInitializer init = new SampleInitializer();
+    init.setId(ids.incrementAndGet());
+    init.setPermId("perm-" + code);
+    init.setCode(code);
+    init.setIdentifier("/MY_SPACE/" + code);
+    init.setExperimentIdentifierOrNull(experimentID);
+    init.setSampleTypeId(1L);
+    init.setSampleTypeCode(type);
+    init.putProperty("Q_SECONDARY_NAME", secondaryName);
+    if (sampleType != null) {
+      init.putProperty("Q_SAMPLE_TYPE", sampleType);
+    }
+    init.setRegistrationDetails(details(REGISTERED));
+    init.setRetrievedFetchOptions(EnumSet.of(SampleFetchOption.PROPERTIES,
+        SampleFetchOption.PARENTS, SampleFetchOption.CHILDREN));
+    samples.put(code, new Sample(init));
+  }
+
+  private static EntityRegistrationDetails details(Date modified) {
+    EntityRegistrationDetailsInitializer init = new EntityRegistrationDetailsInitializer();
+    init.setRegistrationDate(REGISTERED);
+    init.setModificationDate(modified);
+    return new EntityRegistrationDetails(init);
+  }
+
+  // rows as documented in ProjectLoader
+  private QueryTableModel summarize() {
+    SimpleDateFormat day = new SimpleDateFormat("yy-MM-dd");
+    Map<List<String>, Integer> counts = new LinkedHashMap<>();
+    for (Sample s : samples.values()) {
+      List<String> group = new ArrayList<>();
+      group.add(s.getExperimentIdentifierOrNull());
+      group.add(day.format(s.getRegistrationDetails().getRegistrationDate()));
+      group.add(s.getSampleTypeCode());
+      group.add(s.getProperties().get("Q_SAMPLE_TYPE"));
+      counts.merge(group, 1, Integer::sum);
+    }
+    QueryTableModel table = new QueryTableModel(new ArrayList<>());
+    for (Map.Entry<List<String>, Integer> entry : counts.entrySet()) {
+      List<String> group = entry.getKey();
+      table.addRow(new Serializable[] {group.get(0), group.get(1), group.get(2), group.get(3),
+          entry.getValue()});
+    }
+    return table;
+  }
+
+  private ProjectSnapshot load() {
+    return loader.load("MY_SPACE", "QABCD");
+  }
+
+  // loads everything, as without the summary service
+  private ProjectSnapshot loadCompletely() {
+    summaryServiceFails = true;
+    ProjectSnapshot res = load();
+    assertTrue(res.isComplete());
+    return res;
+  }
+
+  private static Map<String, Set<String>> codesByExperiment(ProjectSnapshot snapshot) {
+    Map<String, Set<String>> res = new TreeMap<>();
+    for (ExperimentBarcodeSummary summary : snapshot.getSummaries()) {
+      Set<String> codes = res.computeIfAbsent(summary.fetchExperimentID(), e -> new TreeSet<>());
+      for (BarcodeSample s : summary.getSamples()) {
+        codes.add(s.getCode());
+      }
+      assertEquals(summary.getAmount(), Integer.toString(summary.getSamples().size()));
+    }
+    return res;
+  }
+
+  private static Map<String, Set<String>> codes(String... experimentsAndCodes) {
+    Map<String, Set<String>> res = new TreeMap<>();
+    for (int i = 0; i < experimentsAndCodes.length; i += 2) {
+      res.computeIfAbsent(experimentsAndCodes[i], e -> new TreeSet<>())
+          .add(experimentsAndCodes[i + 1]);
+    }
+    return res;
+  }
+
+  @Test
+  public void summariesLoadTheirSamplesOnDemand() {
+    ProjectSnapshot snapshot = load();
+
+    assertEquals(1, summaryCalls.get());
+    assertEquals(0, projectLoads.get());
+    assertFalse(snapshot.isComplete());
+    Map<String, String> bioTypes = new HashMap<>();
+    for (ExperimentBarcodeSummary summary : snapshot.getSummaries()) {
+      bioTypes.put(summary.fetchExperimentID(), summary.getBio_Type());
+    }
+    assertEquals("DNA", bioTypes.get(E1));
+    assertEquals("Tissue Extracts", bioTypes.get(E2));
+    assertEquals(0, experimentSearches.get());
+
+    assertEquals(codes(E1, "QABCD001AE", E1, "QABCD002AM", E2, "QABCD003AU"),
+        codesByExperiment(snapshot));
+    assertEquals(2, experimentSearches.get());
+  }
+
+  @Test
+  public void failingSummaryServiceFallsBackToLoadingAllSamples() {
+    ProjectSnapshot snapshot = loadCompletely();
+
+    assertEquals(1, summaryCalls.get());
+    assertEquals(1, projectLoads.get());
+    assertEquals(codes(E1, "QABCD001AE", E1, "QABCD002AM", E2, "QABCD003AU"),
+        codesByExperiment(snapshot));
+
+    // other projects do not call the failing service again for a while
+    summaryServiceFails = false;
+    loader.load("MY_SPACE", "QWXYZ");
+    assertEquals(1, summaryCalls.get());
+    assertEquals(2, projectLoads.get());
+
+    ProjectLoader.resetSummaryService();
+    loader.load("MY_SPACE", "QXXXX");
+    assertEquals(2, summaryCalls.get());
+    assertEquals(2, projectLoads.get());
+  }
+
+  @Test
+  public void summaryServiceIsOnlyCalledIfEnabled() {
+    loader = new ProjectLoader(fakeClient, new VocabularyCache(fakeClient),
+        new ProjectSnapshotCache(1000), new ExperimentalDesignCache(10));
+
+    assertTrue(load().isComplete());
+    assertEquals(0, summaryCalls.get());
+    assertEquals(1, projectLoads.get());
+  }
+
+  @Test
+  public void unchangedProjectsAreTakenFromTheCache() {
+    ProjectSnapshot snapshot = loadCompletely();
+
+    assertSame(snapshot, load());
+    assertEquals(1, projectLoads.get());
+    assertEquals(0, experimentSearches.get());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void cachedSamplesCannotBeChanged() {
+    loadCompletely().getSummaries().iterator().next().getSamples().clear();
+  }
+
+  @Test
+  public void changedSamplesAreMerged() {
+    ProjectSnapshot before = loadCompletely();
+    putSample("QABCD002AM", E1, "Q_TEST_SAMPLE", "DNA", "renamed");
+    touch(E1);
+
+    ProjectSnapshot after = load();
+
+    assertNotSame(before, after);
+    assertEquals(1, projectLoads.get());
+    assertEquals(1, experimentSearches.get());
+    assertEquals(codes(E1, "QABCD001AE", E1, "QABCD002AM", E2, "QABCD003AU"),
+        codesByExperiment(after));
+    for (ExperimentBarcodeSummary summary : after.getSummaries()) {
+      for (BarcodeSample s : summary.getSamples()) {
+        if (s.getCode().equals("QABCD002AM")) {
+          assertEquals("renamed", s.getProperty("Q_SECONDARY_NAME"));
+        }
+      }
+    }
+    // the cached snapshot may still be shown by other sessions
+    assertEquals(codes(E1, "QABCD001AE", E1, "QABCD002AM", E2, "QABCD003AU"),
+        codesByExperiment(before));
+  }
+
+  @Test
+  public void samplesChangedInUnchangedExperimentsAreLoadedAfterMaxAge() {
+    ProjectSnapshot before = loadCompletely();
+    // openBIS does not modify the experiment if only a property of a sample changes
+    putSample("QABCD002AM", E1, "Q_TEST_SAMPLE", "DNA", "renamed");
+
+    assertSame(before, load());
+
+    loader.setMaxFullLoadAge(0);
+    ProjectSnapshot after = load();
+
+    assertNotSame(before, after);
+    assertEquals(2, projectLoads.get());
+    assertEquals(0, experimentSearches.get());
+    for (ExperimentBarcodeSummary summary : after.getSummaries()) {
+      for (BarcodeSample s : summary.getSamples()) {
+        if (s.getCode().equals("QABCD002AM")) {
+          assertEquals("renamed", s.getProperty("Q_SECONDARY_NAME"));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void newSamplesAreMerged() {
+    loadCompletely();
+    putSample("QABCD004A2", E2, "Q_BIOLOGICAL_SAMPLE", null);
+    touch(E2);
+
+    assertEquals(
+        codes(E1, "QABCD001AE", E1, "QABCD002AM", E2, "QABCD003AU", E2, "QABCD004A2"),
+        codesByExperiment(load()));
+    assertEquals(1, projectLoads.get());
+  }
+
+  @Test
+  public void movedSamplesChangeTheirExperiment() {
+    loadCompletely();
+    putSample("QABCD002AM", E2, "Q_TEST_SAMPLE", "DNA");
+    touch(E1);
+    touch(E2);
+
+    assertEquals(codes(E1, "QABCD001AE", E2, "QABCD002AM", E2, "QABCD003AU"),
+        codesByExperiment(load()));
+    assertEquals(1, projectLoads.get());
+    assertEquals(2, experimentSearches.get());
+  }
+
+  @Test
+  public void deletedSamplesAreRemoved() {
+    loadCompletely();
+    samples.remove("QABCD001AE");
+    touch(E1);
+
+    assertEquals(codes(E1, "QABCD002AM", E2, "QABCD003AU"), codesByExperiment(load()));
+    assertEquals(1, projectLoads.get());
+  }
+
+  @Test
+  public void removedExperimentsLoadAllSamples() {
+    loadCompletely();
+    experiments.remove(E2);
+    samples.remove("QABCD003AU");
+
+    assertEquals(codes(E1, "QABCD001AE", E1, "QABCD002AM"), codesByExperiment(load()));
+    assertEquals(2, projectLoads.get());
+  }
+}
@@ -0,0 +1,104 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import ch.systemsx.cisd.openbis.generic.shared.api.v1.dto.Experiment;
+import life.qbic.portal.portlet.model.BarcodeSample;
+import life.qbic.portal.portlet.model.ExperimentBarcodeSummary;
+import life.qbic.portal.portlet.model.ProjectSnapshot;
+import life.qbic.portal.portlet.model.PropertySymbolTable;
+import life.qbic.portal.portlet.util.Tuple;
+import org.junit.Test;
+
+public class ProjectSnapshotCacheTest {
+
+  private static ProjectSnapshot snapshot(String projectID, int numExperiments) {
+    Map<String, Experiment> experiments = new HashMap<>();
+    for (int i = 0; i < numExperiments; i++) {
+      experiments.put(projectID + "E" + i, null);
+    }
+    return new ProjectSnapshot(projectID, Collections.emptyMap(), experiments,
+        Collections.emptyMap(), null, Collections.emptyMap(), new PropertySymbolTable(), 0);
+  }
+
+  @Test
+  public void leastRecentlyUsedSnapshotsAreEvicted() {
+    ProjectSnapshotCache cache = new ProjectSnapshotCache(30);
+    cache.put(snapshot("/A/QAAAA", 9));
+    cache.put(snapshot("/A/QBBBB", 9));
+    cache.get("/A/QAAAA");
+
+    cache.put(snapshot("/A/QCCCC", 9));
+    assertEquals(30, cache.getWeight());
+
+    cache.put(snapshot("/A/QDDDD", 1));
+    assertNotNull(cache.get("/A/QAAAA"));
+    assertNull(cache.get("/A/QBBBB"));
+    assertNotNull(cache.get("/A/QCCCC"));
+    assertNotNull(cache.get("/A/QDDDD"));
+    assertEquals(22, cache.getWeight());
+  }
+
+  @Test
+  public void replacedSnapshotsDoNotCountTwice() {
+    ProjectSnapshotCache cache = new ProjectSnapshotCache(30);
+    cache.put(snapshot("/A/QAAAA", 9));
+    cache.put(snapshot("/A/QAAAA", 4));
+    assertEquals(5, cache.getWeight());
+  }
+
+  @Test
+  public void propertyValuesCountTowardsTheWeight() {
+    PropertySymbolTable symbols = new PropertySymbolTable();
+    symbols.intern("Liver");
+    symbols.intern("Blood");
+    ProjectSnapshot snapshot = new ProjectSnapshot("/A/QAAAA", Collections.emptyMap(),
+        Collections.emptyMap(), Collections.emptyMap(), null, Collections.emptyMap(), symbols, 0);
+    assertEquals(3, snapshot.getWeight());
+  }
+
+  private static BarcodeSample sample(String code, String tissue, PropertySymbolTable symbols) {
+    return new BarcodeSample(code, "Q_BIOLOGICAL_SAMPLE", "/A/QAAAA/QAAAAE1", new Date(),
+        Collections.emptyList(), Collections.singletonMap("Q_PRIMARY_TISSUE", tissue), symbols);
+  }
+
+  @Test
+  public void snapshotsAreWeighedAgainWhenSamplesAreLoaded() {
+    PropertySymbolTable symbols = new PropertySymbolTable();
+    ExperimentBarcodeSummary summary = new ExperimentBarcodeSummary("Tissue Extracts", "3",
+        "/A/QAAAA/QAAAAE1", "17-07-14", () -> Arrays.asList(sample("QAAAA001AE", "Liver", symbols),
+            sample("QAAAA002AM", "Blood", symbols), sample("QAAAA003AU", "Liver", symbols)));
+    ProjectSnapshot snapshot = new ProjectSnapshot("/A/QAAAA", Collections.emptyMap(),
+        Collections.emptyMap(),
+        Collections.singletonMap(new Tuple("17-07-14", "/A/QAAAA/QAAAAE1"), summary), null,
+        new ConcurrentHashMap<>(), symbols, 0);
+    ProjectSnapshotCache cache = new ProjectSnapshotCache(12);
+    cache.put(snapshot("/A/QBBBB", 4));
+    cache.put(snapshot);
+    assertEquals(9, cache.getWeight());
+
+    summary.getSamples();
+    cache.reweigh("/A/QAAAA");
+
+    // sample type, experiment and two tissues were added to the symbols
+    assertEquals(8, cache.getWeight());
+    assertNull(cache.get("/A/QBBBB"));
+    assertNotNull(cache.get("/A/QAAAA"));
+  }
+
+  @Test
+  public void tooLargeSnapshotsAreNotCached() {
+    ProjectSnapshotCache cache = new ProjectSnapshotCache(30);
+    cache.put(snapshot("/A/QAAAA", 40));
+    assertNull(cache.get("/A/QAAAA"));
+    assertEquals(0, cache.getWeight());
+  }
+}
@@ -0,0 +1,41 @@
+package life.qbic.portal.portlet.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import life.qbic.openbis.openbisclient.IOpenBisClient;
+import org.junit.Test;
+
+public class VocabularyCacheTest {
+
+  private final AtomicInteger vocabularyCalls = new AtomicInteger();
+
+  private final IOpenBisClient fakeClient = (IOpenBisClient) Proxy.newProxyInstance(
+      IOpenBisClient.class.getClassLoader(), new Class<?>[] {IOpenBisClient.class},
+      (proxy, method, args) -> {
+        if (!method.getName().equals("getVocabCodesAndLabelsForVocab")) {
+          throw new UnsupportedOperationException(method.getName());
+        }
+        vocabularyCalls.incrementAndGet();
+        Map<String, String> taxonomy = new HashMap<>();
+        taxonomy.put("Arabidopsis thaliana", "3702");
+        taxonomy.put("Homo sapiens", "9606");
+        taxonomy.put("Other", "0");
+        return taxonomy;
+      });
+
+  @Test
+  public void shortSpeciesNamesAreComputedOnce() {
+    VocabularyCache cache = new VocabularyCache(fakeClient);
+
+    assertEquals("A. thaliana", cache.getShortSpeciesName("3702"));
+    assertEquals("H. sapiens", cache.getShortSpeciesName("9606"));
+    assertEquals("Other", cache.getShortSpeciesName("0"));
+    assertNull(cache.getShortSpeciesName("12345"));
+    assertEquals(1, vocabularyCalls.get());
+  }
+}
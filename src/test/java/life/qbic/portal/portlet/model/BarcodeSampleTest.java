@@ -0,0 +1,50 @@
+package life.qbic.portal.portlet.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class BarcodeSampleTest {
+
+  private static BarcodeSample sample(String code, String tissue, PropertySymbolTable symbols) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("Q_PRIMARY_TISSUE", new String(tissue));
+    properties.put("Q_SECONDARY_NAME", code + " name");
+    properties.put("Q_ADDITIONAL_INFO", "not needed for barcodes");
+    return new BarcodeSample(code, "Q_BIOLOGICAL_SAMPLE", "/SPACE/QABCD/QABCDE2", new Date(),
+        Collections.emptyList(), properties, symbols);
+  }
+
+  @Test
+  public void repeatedValuesAreStoredOnce() {
+    PropertySymbolTable symbols = new PropertySymbolTable();
+    BarcodeSample first = sample("QABCD001AE", "Liver", symbols);
+    BarcodeSample second = sample("QABCD002AM", "Liver", symbols);
+
+    assertSame(first.getProperty("Q_PRIMARY_TISSUE"), second.getProperty("Q_PRIMARY_TISSUE"));
+    assertSame(first.getSampleTypeCode(), second.getSampleTypeCode());
+    // sample type, experiment and tissue, secondary names are unique and not interned
+    assertEquals(3, symbols.size());
+  }
+
+  @Test
+  public void propertiesCanBeReadAsMap() {
+    BarcodeSample s = sample("QABCD001AE", "Liver", new PropertySymbolTable());
+    Map<String, String> properties = s.getProperties();
+
+    assertEquals(2, properties.size());
+    assertEquals("Liver", properties.get("Q_PRIMARY_TISSUE"));
+    assertEquals("QABCD001AE name", properties.get("Q_SECONDARY_NAME"));
+    assertTrue(properties.containsKey("Q_SECONDARY_NAME"));
+    assertFalse(properties.containsKey("Q_NCBI_ORGANISM"));
+    assertNull(properties.get("Q_ADDITIONAL_INFO"));
+  }
+}
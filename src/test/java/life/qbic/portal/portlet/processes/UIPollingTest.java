@@ -0,0 +1,53 @@
+package life.qbic.portal.portlet.processes;
+
+import static org.junit.Assert.assertEquals;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.ui.UI;
+import org.junit.Test;
+
+public class UIPollingTest {
+
+  private static UI ui() {
+    return new UI() {
+      @Override
+      protected void init(VaadinRequest request) {}
+    };
+  }
+
+  @Test
+  public void uiPollsUntilItsLastJobEnded() {
+    UI ui = ui();
+    UIPolling.startJob(ui);
+    UIPolling.startJob(ui);
+
+    UIPolling.endJob(ui);
+    assertEquals(200, ui.getPollInterval());
+
+    UIPolling.endJob(ui);
+    assertEquals(-1, ui.getPollInterval());
+  }
+
+  @Test
+  public void jobsOfOtherUIsAreNotCounted() {
+    UI ui = ui();
+    UI other = ui();
+    UIPolling.startJob(ui);
+    UIPolling.startJob(other);
+
+    UIPolling.endJob(ui);
+
+    assertEquals(-1, ui.getPollInterval());
+    assertEquals(200, other.getPollInterval());
+  }
+
+  @Test
+  public void unknownJobsDoNotStopPolling() {
+    UI ui = ui();
+    ui.setPollInterval(500);
+
+    UIPolling.endJob(ui);
+
+    assertEquals(500, ui.getPollInterval());
+  }
+}
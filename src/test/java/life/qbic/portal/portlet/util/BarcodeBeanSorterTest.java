@@ -0,0 +1,90 @@
+package life.qbic.portal.portlet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import life.qbic.datamodel.printing.IBarcodeBean;
+import life.qbic.datamodel.printing.NewModelBarcodeBean;
+import life.qbic.datamodel.sorters.SampleCodeComparator;
+import life.qbic.datamodel.sorters.SampleExtIDComparator;
+import life.qbic.portal.portlet.model.SortBy;
+import org.junit.Test;
+
+public class BarcodeBeanSorterTest {
+
+  private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWX";
+
+  private static List<IBarcodeBean> beans(int size, boolean withEntities) {
+    Random random = new Random(size);
+    List<IBarcodeBean> beans = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      String code;
+      if (withEntities && i % 7 == 0) {
+        code = String.format("QABCDENTITY-%d", random.nextInt(100));
+      } else {
+        String project = random.nextBoolean() ? "QABCD" : "QWXYZ";
+        // few distinct counters, so the order of equal keys is checked as well
+        code = String.format("%s%03d%c%c", project, random.nextInt(20),
+            LETTERS.charAt(random.nextInt(3)), LETTERS.charAt(random.nextInt(LETTERS.length())));
+      }
+      beans.add(new NewModelBarcodeBean(code, code, "", "", "", Collections.emptyList(), "",
+          "lab " + random.nextInt(50)));
+    }
+    return beans;
+  }
+
+  private static void assertSameOrder(List<IBarcodeBean> expected, List<IBarcodeBean> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame("bean " + i, expected.get(i), actual.get(i));
+    }
+  }
+
+  @Test
+  public void codeOrderMatchesComparator() {
+    for (int size : new int[] {0, 1, 100, 20000}) {
+      List<IBarcodeBean> expected = beans(size, false);
+      List<IBarcodeBean> actual = new ArrayList<>(expected);
+      expected.sort(SampleCodeComparator.getInstance());
+
+      BarcodeBeanSorter.sort(actual, SortBy.BARCODE_ID);
+
+      assertSameOrder(expected, actual);
+    }
+  }
+
+  @Test
+  public void entitiesAreSortedByComparator() {
+    List<IBarcodeBean> expected = beans(300, true);
+    List<IBarcodeBean> actual = new ArrayList<>(expected);
+    expected.sort(SampleCodeComparator.getInstance());
+
+    BarcodeBeanSorter.sort(actual, SortBy.BARCODE_ID);
+
+    assertSameOrder(expected, actual);
+  }
+
+  @Test
+  public void parallelOrderMatchesComparator() {
+    List<IBarcodeBean> expected = beans(20000, false);
+    List<IBarcodeBean> actual = new ArrayList<>(expected);
+    expected.sort(SampleExtIDComparator.getInstance());
+
+    BarcodeBeanSorter.sort(actual, SortBy.EXT_ID);
+
+    assertSameOrder(expected, actual);
+  }
+
+  @Test
+  public void keysFollowTheComparedParts() {
+    assertEquals("QABCDA001", BarcodeBeanSorter.codeKey("QABCD001AE"));
+    assertNull(BarcodeBeanSorter.codeKey("QABCDENTITY-1"));
+    assertNull(BarcodeBeanSorter.codeKey("NGS1234"));
+    assertNull(BarcodeBeanSorter.codeKey("QABCD"));
+  }
+}
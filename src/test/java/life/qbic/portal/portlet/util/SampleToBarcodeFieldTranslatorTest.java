@@ -0,0 +1,164 @@
+package life.qbic.portal.portlet.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import life.qbic.portal.portlet.model.BarcodeSample;
+import life.qbic.portal.portlet.model.PropertySymbolTable;
+import life.qbic.portal.portlet.model.QRInfoOptions;
+import life.qbic.portal.portlet.model.SheetInfoOptions;
+import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator.JobFields;
+import life.qbic.portal.portlet.util.SampleToBarcodeFieldTranslator.TranslatedFields;
+import life.qbic.xml.properties.Property;
+import life.qbic.xml.properties.PropertyType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SampleToBarcodeFieldTranslatorTest {
+
+  private final PropertySymbolTable symbols = new PropertySymbolTable();
+  private SampleToBarcodeFieldTranslator translator;
+
+  private BarcodeSample sample(String code, String type, String... properties) {
+    Map<String, String> map = new HashMap<>();
+    for (int i = 0; i < properties.length; i += 2) {
+      map.put(properties[i], properties[i + 1]);
+    }
+    return new BarcodeSample(code, type, "/MY_SPACE/QABCD/QABCDE1", new Date(),
+        Arrays.asList("QABCD001AE", "QABCD002AM"), map, symbols);
+  }
+
+  @Before
+  public void setUp() {
+    translator = new SampleToBarcodeFieldTranslator();
+    translator.setSampleCodeToSpecies(Collections.singletonMap("QABCD001AE", "Human"));
+    Map<Pair<String, String>, Property> factors = new HashMap<>();
+    factors.put(new ImmutablePair<>("Dose", "QABCD003A2"),
+        new Property("Dose", "20", PropertyType.Factor));
+    factors.put(new ImmutablePair<>("Treatment", "QABCD003A2"),
+        new Property("Treatment", "Doxorubicin 2", PropertyType.Factor));
+    factors.put(new ImmutablePair<>("Condition", "QABCD003A2"),
+        new Property("Condition", "long-term hypoxia after surgery", PropertyType.Factor));
+    Map<String, List<Property>> properties = new HashMap<>();
+    properties.put("QABCD003A2", Arrays.asList(new Property("Dose", "10", PropertyType.Property),
+        new Property("Operator", "Ada", PropertyType.Property)));
+    translator.setDesignProperties(factors, properties);
+  }
+
+  private String info(Object option, BarcodeSample s, boolean cut) {
+    return translator.compileInfo(option, cut).extract(s, "QABCD001AE QABCD002AM");
+  }
+
+  @Test
+  public void factorsTakePrecedenceOverProperties() {
+    BarcodeSample s = sample("QABCD003A2", "Q_TEST_SAMPLE");
+
+    assertEquals("Dose 20", info("Dose", s, false));
+    assertEquals("Operator Ada", info("Operator", s, false));
+    assertEquals("", info("Dose", sample("QABCD004AA", "Q_TEST_SAMPLE"), false));
+    assertEquals("", info("Unknown", s, false));
+  }
+
+  @Test
+  public void designValuesAreShortenedForTubeLabels() {
+    BarcodeSample s = sample("QABCD003A2", "Q_TEST_SAMPLE");
+
+    assertEquals("Treatment Doxorubicin 2", info("Treatment", s, false));
+    // label is dropped first, then the value is cut
+    assertEquals("Doxorubicin 2", info("Treatment", s, true));
+    assertEquals("Condition long-term hypoxia after surgery", info("Condition", s, false));
+    assertEquals("long-term hypoxia aft", info("Condition", s, true));
+    assertEquals("Dose 20", info("Dose", s, true));
+  }
+
+  @Test
+  public void standardOptionsAreCutForTubeLabels() {
+    BarcodeSample s = sample("QABCD001AE", "Q_BIOLOGICAL_SAMPLE", "Q_PRIMARY_TISSUE", "Liver",
+        "Q_SECONDARY_NAME", "patient 17, left liver lobe", "Q_SAMPLE_TYPE", "RNA");
+
+    assertEquals("patient 17, left liver lobe", info(QRInfoOptions.Secondary_Name, s, false));
+    assertEquals("patient 17, left live", info(QRInfoOptions.Secondary_Name, s, true));
+    assertEquals("Liver", info(QRInfoOptions.Extract_Material, s, true));
+    assertEquals("Human", info(QRInfoOptions.Species, s, true));
+    assertEquals("QABCD001AE", info(QRInfoOptions.QBIC_Code.toString(), s, true));
+    assertEquals("QABCD001AE QABCD002AM", info(SheetInfoOptions.Parent_Samples, s, false));
+    assertEquals("", info(QRInfoOptions.Lab_ID, s, true));
+    assertEquals("", info(null, s, true));
+  }
+
+  @Test
+  public void materialFallsBackToMhcClassAndSampleType() {
+    assertEquals("MHC_CLASS_I", info(QRInfoOptions.Extract_Material, sample("QABCD005AB",
+        "Q_MHC_LIGAND_EXTRACT", "Q_MHC_CLASS", "MHC_CLASS_I", "Q_SAMPLE_TYPE", "PEPTIDES"), false));
+    assertEquals("PEPTIDES", info(QRInfoOptions.Extract_Material,
+        sample("QABCD006AC", "Q_TEST_SAMPLE", "Q_SAMPLE_TYPE", "PEPTIDES"), false));
+  }
+
+  @Test
+  public void idLineIsMadeFileNameSafeAndCut() {
+    BarcodeSample s = sample("QABCD001AE", "Q_TEST_SAMPLE", "Q_SECONDARY_NAME", "knock null #1",
+        "Q_EXTERNALDB_ID", "LAB-ID-1234567890123");
+
+    assertEquals("QABCD001AE", translator.getCodeString(s, "QBiC ID"));
+    assertEquals("knock_1", translator.getCodeString(s, "Secondary Name"));
+    assertEquals("LAB-ID-12345678", translator.getCodeString(s, "Lab ID"));
+    // unset values end up as "null", which is removed
+    assertEquals("", translator.getCodeString(sample("QABCD002AM", "Q_TEST_SAMPLE"),
+        "Secondary Name"));
+    assertEquals("", translator.getCodeString(s, "Something else"));
+  }
+
+  @Test
+  public void bioTypesDependOnTheSampleType() {
+    assertEquals("Human", translator.getBioType(
+        sample("QABCD001AE", "Q_BIOLOGICAL_ENTITY", "Q_NCBI_ORGANISM", "9606")));
+    assertEquals("Liver", translator.getBioType(
+        sample("QABCD002AM", "Q_BIOLOGICAL_SAMPLE", "Q_PRIMARY_TISSUE", "Liver")));
+    assertEquals("RNA",
+        translator.getBioType(sample("QABCD003A2", "Q_TEST_SAMPLE", "Q_SAMPLE_TYPE", "RNA")));
+    assertEquals("MHC_CLASS_II", translator.getBioType(
+        sample("QABCD004AA", "Q_MHC_LIGAND_EXTRACT", "Q_MHC_CLASS", "MHC_CLASS_II")));
+    assertEquals("NGS RUN", translator.getBioType(sample("QABCD005AB", "Q_MS_RUN")));
+    assertEquals("Imaging RUN",
+        translator.getBioType(sample("QABCD006AC", "Q_BMI_GENERIC_IMAGING_RUN")));
+    assertEquals("unknown", translator.getBioType(sample("QABCD007AD", "Q_NGS_SINGLE_SAMPLE_RUN")));
+    assertEquals("unknown", translator.getBioType(sample("QABCD008AE", "Q_BIOLOGICAL_SAMPLE")));
+    assertEquals("unknown", translator.getBioType(sample("QABCD009AF", "Q_NOT_A_TYPE")));
+  }
+
+  @Test
+  public void translationMatchesSingleSamples() {
+    for (int size : new int[] {SampleToBarcodeFieldTranslator.PARALLEL_THRESHOLD - 1,
+        SampleToBarcodeFieldTranslator.PARALLEL_THRESHOLD}) {
+      List<BarcodeSample> samples = new ArrayList<>();
+      String[] types = {"Q_BIOLOGICAL_SAMPLE", "Q_TEST_SAMPLE", "Q_MS_RUN"};
+      for (int i = 0; i < size; i++) {
+        samples.add(sample(String.format("QABCD%03dX", i), types[i % types.length],
+            "Q_PRIMARY_TISSUE", i % 2 == 0 ? "Liver" : "Blood", "Q_SAMPLE_TYPE", "RNA",
+            "Q_SECONDARY_NAME", "name #" + i));
+      }
+      JobFields fields = new JobFields(translator.compileCode("Secondary Name"),
+          translator.compileInfo(QRInfoOptions.Extract_Material, true),
+          translator.compileInfo(SheetInfoOptions.Parent_Samples, false));
+
+      TranslatedFields translated = translator.translate(samples, fields);
+
+      for (int i = 0; i < size; i++) {
+        BarcodeSample s = samples.get(i);
+        assertEquals(translator.getCodeString(s, "Secondary Name"),
+            translated.getCodedString(i));
+        assertEquals(info(QRInfoOptions.Extract_Material, s, true), translated.getInfo1(i));
+        assertEquals(info(SheetInfoOptions.Parent_Samples, s, false), translated.getInfo2(i));
+        assertEquals(translator.getBioType(s), translated.getBioType(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package life.qbic.portal.portlet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class TTLCacheTest {
+
+  private static final long TTL_MILLIS = 50;
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  // knows the keys "a" and "b" only
+  private Map<String, String> load(Collection<String> keys) {
+    loads.incrementAndGet();
+    Map<String, String> res = new HashMap<>();
+    for (String key : keys) {
+      if (key.equals("a") || key.equals("b")) {
+        res.put(key, key.toUpperCase());
+      }
+    }
+    return res;
+  }
+
+  @Test
+  public void valuesAreLoadedOnceUntilTheyExpire() throws Exception {
+    TTLCache<String, String> cache = new TTLCache<>(TTL_MILLIS, TimeUnit.MILLISECONDS);
+
+    assertEquals("A", cache.get("a", key -> load(Collections.singleton(key)).get(key)));
+    assertEquals("A", cache.get("a", key -> load(Collections.singleton(key)).get(key)));
+    assertEquals(1, loads.get());
+
+    Thread.sleep(2 * TTL_MILLIS);
+
+    assertEquals("A", cache.get("a", key -> load(Collections.singleton(key)).get(key)));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void onlyMissingKeysAreLoaded() {
+    TTLCache<String, String> cache = new TTLCache<>(1, TimeUnit.MINUTES);
+    cache.getAll(Collections.singletonList("a"), keys -> {
+      assertEquals(Collections.singletonList("a"), keys);
+      return load(keys);
+    });
+
+    Map<String, String> values = cache.getAll(Arrays.asList("a", "b"), keys -> {
+      assertEquals(Collections.singletonList("b"), keys);
+      return load(keys);
+    });
+
+    assertEquals(2, values.size());
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void unknownKeysAreCachedAsMissing() {
+    TTLCache<String, String> cache = new TTLCache<>(1, TimeUnit.MINUTES);
+
+    assertTrue(cache.getAll(Collections.singletonList("x"), this::load).isEmpty());
+    assertTrue(cache.getAll(Collections.singletonList("x"), this::load).isEmpty());
+    assertNull(cache.get("x", key -> load(Collections.singleton(key)).get(key)));
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void nothingIsCachedIfLoadingFails() {
+    TTLCache<String, String> cache = new TTLCache<>(1, TimeUnit.MINUTES);
+
+    assertTrue(cache.getAll(Collections.singletonList("a"), keys -> null).isEmpty());
+
+    assertEquals(0, cache.size());
+    assertEquals(Collections.singletonMap("a", "A"),
+        cache.getAll(Collections.singletonList("a"), this::load));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void invalidatedKeysAreLoadedAgain() {
+    TTLCache<String, String> cache = new TTLCache<>(1, TimeUnit.MINUTES);
+    cache.getAll(Collections.singletonList("x"), this::load);
+
+    cache.invalidate("x");
+    cache.getAll(Collections.singletonList("x"), this::load);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void expiredEntriesAreRemoved() throws Exception {
+    TTLCache<String, String> cache = new TTLCache<>(TTL_MILLIS, TimeUnit.MILLISECONDS);
+    cache.getAll(Arrays.asList("a", "b", "x"), this::load);
+    assertEquals(3, cache.size());
+
+    Thread.sleep(2 * TTL_MILLIS);
+    cache.getAll(Collections.singletonList("a"), this::load);
+
+    assertEquals(1, cache.size());
+  }
+}
@@ -0,0 +1,47 @@
+package life.qbic.portal.portlet.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import com.vaadin.ui.Table;
+import org.junit.Test;
+
+public class BarcodeViewTest {
+
+  private static Table table(RowContainer<String> rows) {
+    Table table = new Table();
+    table.setSelectable(true);
+    table.setMultiSelect(true);
+    table.setContainerDataSource(rows);
+    return table;
+  }
+
+  @Test
+  public void selectionIsNotKeptForNewRows() {
+    RowContainer<String> rows = new RowContainer<String>().addColumn("Code", code -> code);
+    Table table = table(rows);
+    rows.setRows(Arrays.asList("QABCD001AE", "QABCD002AM", "QABCD003AU"));
+    table.setValue(new HashSet<>(Arrays.asList(0, 2)));
+
+    BarcodeView.setRows(table, rows, Arrays.asList("QWXYZ001AB", "QWXYZ002AJ", "QWXYZ003AR"));
+
+    assertTrue(((Collection<?>) table.getValue()).isEmpty());
+    assertEquals(3, rows.size());
+  }
+
+  @Test
+  public void emptyTablesHaveNoSelection() {
+    RowContainer<String> rows = new RowContainer<String>().addColumn("Code", code -> code);
+    Table table = table(rows);
+    rows.setRows(Arrays.asList("QABCD001AE", "QABCD002AM"));
+    table.setValue(Collections.singleton(1));
+
+    BarcodeView.setRows(table, rows, Collections.emptyList());
+
+    assertTrue(((Collection<?>) table.getValue()).isEmpty());
+  }
+}
@@ -0,0 +1,88 @@
+package life.qbic.portal.portlet.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+import org.junit.Test;
+
+public class RowContainerTest {
+
+  private static RowContainer<String> container() {
+    RowContainer<String> container = new RowContainer<String>()
+        .addColumn("Code", code -> code).addColumn("Project", code -> code.substring(0, 5));
+    container.setRows(Arrays.asList("QABCD001AE", "QABCD002AM", "QWXYZ001AB"));
+    return container;
+  }
+
+  @Test
+  public void cellsAreComputedFromRows() {
+    RowContainer<String> container = container();
+
+    assertEquals(3, container.size());
+    assertEquals("QABCD002AM", container.getRow(1));
+    assertEquals("QWXYZ", container.getContainerProperty(2, "Project").getValue());
+    assertNull(container.getRow(3));
+  }
+
+  @Test
+  public void filtersHideRowsAndStayWhenRowsAreReplaced() {
+    RowContainer<String> container = container();
+    container.addContainerFilter(new SimpleStringFilter("Project", "qabcd", true, false));
+
+    assertEquals(2, container.size());
+    assertFalse(container.containsId(2));
+
+    container.setRows(Collections.singletonList("QWXYZ003AC"));
+    assertEquals(0, container.size());
+    container.removeAllContainerFilters();
+    assertTrue(container.containsId(0));
+  }
+
+  @Test
+  public void indexedFiltersMatchScannedFilters() {
+    List<String> rows = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      rows.add(String.format("QABCD%03d%s lab-%d", i % 1000, i % 2 == 0 ? "AE" : "Am", i));
+    }
+    RowContainer<String> scanned = new RowContainer<String>().addColumn("Code", code -> code)
+        .addColumn("Project", code -> code.substring(0, 5));
+    RowContainer<String> indexed = new RowContainer<String>()
+        .addIndexedColumn("Code", code -> code).addColumn("Project", code -> code.substring(0, 5));
+    scanned.setRows(rows);
+    indexed.setRows(rows);
+
+    for (String text : new String[] {"", "a", "am", "D01", "d012am", "LAB-19", "ab-1999", "xyz"}) {
+      for (boolean ignoreCase : new boolean[] {true, false}) {
+        for (boolean prefix : new boolean[] {true, false}) {
+          scanned.removeAllContainerFilters();
+          indexed.removeAllContainerFilters();
+          scanned.addContainerFilter(new SimpleStringFilter("Code", text, ignoreCase, prefix));
+          indexed.addContainerFilter(new SimpleStringFilter("Code", text, ignoreCase, prefix));
+          scanned.addContainerFilter(new SimpleStringFilter("Project", "qab", true, false));
+          indexed.addContainerFilter(new SimpleStringFilter("Project", "qab", true, false));
+
+          assertEquals(text + " " + ignoreCase + " " + prefix, scanned.getItemIds(),
+              indexed.getItemIds());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void indexedFiltersKeepSortOrder() {
+    RowContainer<String> container = new RowContainer<String>()
+        .addIndexedColumn("Code", code -> code);
+    container.setRows(Arrays.asList("QABCD001AE", "QWXYZ001AB", "QABCD002AM"));
+    container.sort(new Object[] {"Code"}, new boolean[] {false});
+    container.addContainerFilter(new SimpleStringFilter("Code", "abcd", true, false));
+
+    assertEquals(Arrays.asList(2, 0), container.getItemIds());
+  }
+}
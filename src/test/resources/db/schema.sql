@@ -0,0 +1,87 @@
+-- Subset of qbic_usermanagement_db used by the barcode portlet, in MySQL syntax
+
+CREATE TABLE IF NOT EXISTS person (
+  id INT NOT NULL AUTO_INCREMENT,
+  user_id VARCHAR(32),
+  title VARCHAR(16),
+  first_name VARCHAR(64) NOT NULL,
+  last_name VARCHAR(64) NOT NULL,
+  email VARCHAR(128),
+  active TINYINT(1) DEFAULT 1,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS affiliation (
+  id INT NOT NULL AUTO_INCREMENT,
+  organization VARCHAR(128) NOT NULL,
+  address_addition VARCHAR(128),
+  street VARCHAR(128),
+  postal_code VARCHAR(16),
+  city VARCHAR(64),
+  country VARCHAR(64),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS person_affiliation (
+  person_id INT NOT NULL,
+  affiliation_id INT NOT NULL,
+  PRIMARY KEY (person_id, affiliation_id)
+);
+
+CREATE TABLE IF NOT EXISTS projects (
+  id INT NOT NULL AUTO_INCREMENT,
+  openbis_project_identifier VARCHAR(64) NOT NULL,
+  short_title VARCHAR(255),
+  PRIMARY KEY (id),
+  UNIQUE KEY projects_identifier (openbis_project_identifier)
+);
+
+CREATE TABLE IF NOT EXISTS projects_persons (
+  id INT NOT NULL AUTO_INCREMENT,
+  project_id INT NOT NULL,
+  person_id INT NOT NULL,
+  project_role VARCHAR(32) NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS experiments (
+  id INT NOT NULL AUTO_INCREMENT,
+  openbis_experiment_identifier VARCHAR(128) NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS experiments_persons (
+  id INT NOT NULL AUTO_INCREMENT,
+  experiment_id INT NOT NULL,
+  person_id INT NOT NULL,
+  experiment_role VARCHAR(32) NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS labelprinter (
+  id INT NOT NULL AUTO_INCREMENT,
+  name VARCHAR(64) NOT NULL,
+  location VARCHAR(64) NOT NULL,
+  url VARCHAR(128) NOT NULL,
+  status VARCHAR(16),
+  type VARCHAR(32) NOT NULL,
+  admin_only TINYINT(1) DEFAULT 0,
+  user_group VARCHAR(64),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS printer_project_association (
+  id INT NOT NULL AUTO_INCREMENT,
+  printer_id INT NOT NULL,
+  project_id INT NOT NULL,
+  status VARCHAR(16),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS printed_label_counts (
+  printer_id INT NOT NULL,
+  project_id INT NOT NULL,
+  user_name VARCHAR(64) NOT NULL,
+  num_printed INT NOT NULL DEFAULT 0,
+  UNIQUE KEY printed_label_counts_key (printer_id, project_id, user_name)
+);